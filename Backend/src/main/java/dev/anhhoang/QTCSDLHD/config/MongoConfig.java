@@ -1,10 +1,83 @@
 package dev.anhhoang.QTCSDLHD.config;
 
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.bson.types.Decimal128;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import dev.anhhoang.QTCSDLHD.models.Money;
 
 @Configuration
 @EnableMongoAuditing
 public class MongoConfig {
     // Kích hoạt auditing cho MongoDB
-}
\ No newline at end of file
+
+    /**
+     * Money lưu dạng Int64; đọc được cả dữ liệu cũ (double, Decimal128, chuỗi BigDecimal) trước khi migrate
+     */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(
+                new MoneyToLongConverter(),
+                new LongToMoneyConverter(),
+                new IntegerToMoneyConverter(),
+                new DoubleToMoneyConverter(),
+                new Decimal128ToMoneyConverter(),
+                new StringToMoneyConverter()));
+    }
+
+    @WritingConverter
+    static class MoneyToLongConverter implements Converter<Money, Long> {
+        @Override
+        public Long convert(Money source) {
+            return source.getAmount();
+        }
+    }
+
+    @ReadingConverter
+    static class LongToMoneyConverter implements Converter<Long, Money> {
+        @Override
+        public Money convert(Long source) {
+            return Money.of(source);
+        }
+    }
+
+    @ReadingConverter
+    static class IntegerToMoneyConverter implements Converter<Integer, Money> {
+        @Override
+        public Money convert(Integer source) {
+            return Money.of(source.longValue());
+        }
+    }
+
+    @ReadingConverter
+    static class DoubleToMoneyConverter implements Converter<Double, Money> {
+        @Override
+        public Money convert(Double source) {
+            return Money.of(source);
+        }
+    }
+
+    @ReadingConverter
+    static class Decimal128ToMoneyConverter implements Converter<Decimal128, Money> {
+        @Override
+        public Money convert(Decimal128 source) {
+            return Money.of(source.bigDecimalValue());
+        }
+    }
+
+    @ReadingConverter
+    static class StringToMoneyConverter implements Converter<String, Money> {
+        @Override
+        public Money convert(String source) {
+            return Money.of(new BigDecimal(source));
+        }
+    }
+}
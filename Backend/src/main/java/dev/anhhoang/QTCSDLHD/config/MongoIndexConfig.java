@@ -0,0 +1,58 @@
+package dev.anhhoang.QTCSDLHD.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+
+import dev.anhhoang.QTCSDLHD.models.Cart;
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.models.OutboxEvent;
+import dev.anhhoang.QTCSDLHD.models.SellerDailyStats;
+
+@Configuration
+public class MongoIndexConfig {
+
+    // Chỉ tạo index cho các collection được liệt kê ở đây (auto-index-creation đang tắt)
+    private static final List<Class<?>> INDEXED_ENTITIES = List.of(Order.class, SellerDailyStats.class,
+            OutboxEvent.class, Cart.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Tạo các index khai báo bằng annotation (@CompoundIndex, @Indexed) sau khi ứng dụng khởi động
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> entity : INDEXED_ENTITIES) {
+            if (!ensureIndexes(resolver, entity, mongoTemplate.indexOps(entity), entity.getSimpleName())) {
+                return;
+            }
+        }
+        // Collection lưu trữ dùng chung các index của orders
+        ensureIndexes(resolver, Order.class, mongoTemplate.indexOps(Order.ARCHIVE_COLLECTION), Order.ARCHIVE_COLLECTION);
+    }
+
+    private boolean ensureIndexes(IndexResolver resolver, Class<?> entity, IndexOperations indexOps, String name) {
+        try {
+            resolver.resolveIndexFor(entity).forEach(indexOps::createIndex);
+            System.out.println("Ensured MongoDB indexes for " + name);
+        } catch (DataAccessResourceFailureException e) {
+            // Không kết nối được MongoDB thì bỏ qua các collection còn lại
+            System.err.println("MongoDB unavailable, skipping index creation: " + e.getMessage());
+            return false;
+        } catch (Exception e) {
+            System.err.println("Error creating MongoDB indexes for " + name + ": " + e.getMessage());
+        }
+        return true;
+    }
+}
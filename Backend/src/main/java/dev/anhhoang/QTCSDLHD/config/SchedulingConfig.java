@@ -0,0 +1,10 @@
+package dev.anhhoang.QTCSDLHD.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Bật @Scheduled cho các job chạy nền (lưu trữ đơn hàng, ...)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
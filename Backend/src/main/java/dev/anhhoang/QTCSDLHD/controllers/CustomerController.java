@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 import java.security.Principal;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/customers")
@@ -86,15 +87,51 @@ public class CustomerController {
 
     @PostMapping("/orders")
     public ResponseEntity<String> createOrderFromCart(@Valid @RequestBody CreateOrderRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             Principal principal) {
         try {
             String customerId = getCustomerId(principal);
-            String orderId = customerService.createOrderFromCart(customerId, request);
-            return ResponseEntity.ok(orderId);
+            String checkoutId = customerService.createOrderFromCart(customerId, request, idempotencyKey);
+            return ResponseEntity.ok(checkoutId);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body(null);
         }
     }
-}
\ No newline at end of file
+
+    @PostMapping("/orders/quote")
+    public ResponseEntity<?> quoteOrder(@Valid @RequestBody OrderQuoteRequest request) {
+        try {
+            return ResponseEntity.ok(customerService.quoteOrder(request.getItems()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/orders/reservation")
+    public ResponseEntity<?> reserveCheckout(@Valid @RequestBody OrderQuoteRequest request, Principal principal) {
+        try {
+            String customerId = getCustomerId(principal);
+            return ResponseEntity.ok(Map.of("expiresAt", customerService.reserveCheckout(customerId, request.getItems())));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/orders/reservation")
+    public ResponseEntity<?> releaseCheckout(Principal principal) {
+        try {
+            customerService.releaseCheckout(getCustomerId(principal));
+            return ResponseEntity.ok("Reservation released");
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(e.getMessage());
+        }
+    }
+}
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import dev.anhhoang.QTCSDLHD.dto.CursorPage;
 import dev.anhhoang.QTCSDLHD.dto.OrderDTO;
 import dev.anhhoang.QTCSDLHD.dto.UserProfileResponse;
 import dev.anhhoang.QTCSDLHD.services.OrderService;
@@ -30,12 +31,21 @@ public class CustomerOrderController {
     @GetMapping
     public ResponseEntity<?> getCustomerOrders(
             @RequestParam(required = false, defaultValue = "ALL") String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
             Principal principal) {
         try {
             // Lấy thông tin customer từ token
             UserProfileResponse userProfile = userService.findUserProfileByEmail(principal.getName());
             String customerId = userProfile.getId();
 
+            // Có limit hoặc cursor thì trả về theo trang: { items, nextCursor }
+            if (limit != null || cursor != null) {
+                CursorPage<OrderDTO> page = orderService.getOrdersByCustomerPage(customerId, status, cursor,
+                        PageLimits.clamp(limit));
+                return ResponseEntity.ok(page);
+            }
+
             // Lấy danh sách orders của customer (dùng DTO)
             List<OrderDTO> orders = orderService.getOrdersByCustomer(customerId, status);
 
@@ -0,0 +1,23 @@
+package dev.anhhoang.QTCSDLHD.controllers;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Đọc tham số thời gian từ query string: yyyy-MM-dd hoặc yyyy-MM-ddTHH:mm:ss
+ */
+final class DateParams {
+
+    private DateParams() {
+    }
+
+    // Ngày dạng yyyy-MM-dd được hiểu là đầu ngày
+    static LocalDateTime parseStart(String value) {
+        return value.length() == 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value);
+    }
+
+    // Ngày kết thúc dạng yyyy-MM-dd được tính trọn ngày
+    static LocalDateTime parseEnd(String value) {
+        return value.length() == 10 ? LocalDate.parse(value).plusDays(1).atStartOfDay() : LocalDateTime.parse(value);
+    }
+}
@@ -0,0 +1,80 @@
+package dev.anhhoang.QTCSDLHD.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import dev.anhhoang.QTCSDLHD.jobs.OutboxRelayJob;
+import dev.anhhoang.QTCSDLHD.services.CartWriteBehindService;
+import dev.anhhoang.QTCSDLHD.services.OrderBatchWriter;
+import dev.anhhoang.QTCSDLHD.services.PostCheckoutPipeline;
+
+@RestController
+@RequestMapping("/api/monitoring")
+public class MonitoringController {
+
+    @Autowired(required = false)
+    private OutboxRelayJob outboxRelayJob;
+
+    @Autowired
+    private OrderBatchWriter orderBatchWriter;
+
+    @Autowired
+    private PostCheckoutPipeline postCheckoutPipeline;
+
+    @Autowired
+    private CartWriteBehindService cartWriteBehindService;
+
+    /**
+     * Độ trễ và số sự kiện tồn đọng của outbox (đồng bộ hành vi sang Neo4j)
+     */
+    @GetMapping("/outbox")
+    public ResponseEntity<?> getOutboxStats() {
+        try {
+            if (outboxRelayJob == null) {
+                return ResponseEntity.ok(java.util.Map.of("enabled", false));
+            }
+            return ResponseEntity.ok(outboxRelayJob.getStats());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching outbox stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Kích thước batch và hàng đợi của group commit khi tạo đơn
+     */
+    @GetMapping("/order-writer")
+    public ResponseEntity<?> getOrderWriterStats() {
+        try {
+            return ResponseEntity.ok(orderBatchWriter.getStats());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching order writer stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tiến độ các việc chạy nền sau checkout (thử lại, dead letter)
+     */
+    @GetMapping("/post-checkout")
+    public ResponseEntity<?> getPostCheckoutStats() {
+        try {
+            return ResponseEntity.ok(postCheckoutPipeline.getStats());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching post-checkout stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Độ dài stream và số lần ghi giỏ hàng xuống MongoDB của chế độ write-behind
+     */
+    @GetMapping("/cart-write-behind")
+    public ResponseEntity<?> getCartWriteBehindStats() {
+        try {
+            return ResponseEntity.ok(cartWriteBehindService.getStats());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching cart write-behind stats: " + e.getMessage());
+        }
+    }
+}
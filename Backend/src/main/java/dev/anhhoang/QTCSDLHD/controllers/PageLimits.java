@@ -0,0 +1,20 @@
+package dev.anhhoang.QTCSDLHD.controllers;
+
+/**
+ * Giới hạn kích thước trang cho các endpoint phân trang theo cursor
+ */
+final class PageLimits {
+
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 100;
+
+    private PageLimits() {
+    }
+
+    static int clamp(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
@@ -2,7 +2,7 @@ package dev.anhhoang.QTCSDLHD.controllers;
 
 import dev.anhhoang.QTCSDLHD.dto.ProductResponse;
 import dev.anhhoang.QTCSDLHD.services.ProductService;
-import dev.anhhoang.QTCSDLHD.neo4j.services.RecommendationService;
+import dev.anhhoang.QTCSDLHD.services.OutboxService;
 import dev.anhhoang.QTCSDLHD.dto.UserProfileResponse;
 import dev.anhhoang.QTCSDLHD.services.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,7 +19,7 @@ public class ProductController {
     private ProductService productService;
 
     @Autowired
-    private RecommendationService recommendationService;
+    private OutboxService outboxService;
 
     @Autowired
     private UserService userService;
@@ -41,7 +41,7 @@ public class ProductController {
                 UserProfileResponse userProfile = userService.findUserProfileByEmail(principal.getName());
                 String userId = userProfile.getId();
                 System.out.println("Recording product view for userId: " + userId + ", productId: " + id);
-                recommendationService.recordProductView(userId, id);
+                outboxService.publishView(userId, id);
             }
             ProductResponse product = productService.getProductById(id);
             return ResponseEntity.ok(product);
@@ -1,10 +1,14 @@
 package dev.anhhoang.QTCSDLHD.controllers;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -13,9 +17,12 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import dev.anhhoang.QTCSDLHD.dto.CursorPage;
 import dev.anhhoang.QTCSDLHD.dto.UserProfileResponse;
 import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.services.OrderExportService;
 import dev.anhhoang.QTCSDLHD.services.OrderService;
 import dev.anhhoang.QTCSDLHD.services.UserService;
 
@@ -29,16 +36,28 @@ public class SellerOrderController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private OrderExportService orderExportService;
+
     @GetMapping
     public ResponseEntity<?> getSellerOrders(
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
             Principal principal) {
         try {
             // Lấy thông tin seller từ token
             UserProfileResponse userProfile = userService.findUserProfileByEmail(principal.getName());
             String sellerId = userProfile.getId();
+
+            // Có limit hoặc cursor thì trả về theo trang: { items, nextCursor }
+            if (limit != null || cursor != null) {
+                CursorPage<Order> page = orderService.getOrdersBySellerPage(sellerId, status, startDate, endDate,
+                        cursor, PageLimits.clamp(limit));
+                return ResponseEntity.ok(page);
+            }
             
             // Lấy danh sách orders của seller
             List<Order> orders = orderService.getOrdersBySeller(sellerId, status, startDate, endDate);
@@ -49,6 +68,38 @@ public class SellerOrderController {
         }
     }
 
+    @GetMapping("/export")
+    public ResponseEntity<?> exportSellerOrders(
+            @RequestParam(required = false, defaultValue = "csv") String format,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            Principal principal) {
+        try {
+            UserProfileResponse userProfile = userService.findUserProfileByEmail(principal.getName());
+            if (userProfile.getSellerProfile() == null) {
+                return ResponseEntity.status(403).body("Only sellers can export orders");
+            }
+            String shopId = userProfile.getSellerProfile().getShopId();
+            OrderExportService.Format exportFormat = OrderExportService.Format.from(format);
+            LocalDateTime fromTime = from != null ? DateParams.parseStart(from) : null;
+            LocalDateTime toTime = to != null ? DateParams.parseEnd(to) : null;
+
+            // Ghi trực tiếp từng dòng ra response, không dựng toàn bộ danh sách trong bộ nhớ
+            StreamingResponseBody body = out -> orderExportService.exportShopOrders(
+                    shopId, fromTime, toTime, exportFormat, out);
+
+            boolean csv = exportFormat == OrderExportService.Format.CSV;
+            return ResponseEntity.ok()
+                    .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                            : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8))
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"orders." + (csv ? "csv" : "ndjson") + "\"")
+                    .body(body);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error exporting seller orders: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/{orderId}")
     public ResponseEntity<?> getOrderDetail(@PathVariable String orderId, Principal principal) {
         try {
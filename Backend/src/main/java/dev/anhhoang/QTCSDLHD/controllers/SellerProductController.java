@@ -13,6 +13,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import dev.anhhoang.QTCSDLHD.models.Product;
@@ -20,6 +21,9 @@ import dev.anhhoang.QTCSDLHD.models.Role;
 import dev.anhhoang.QTCSDLHD.models.User;
 import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
 import dev.anhhoang.QTCSDLHD.repositories.UserRepository;
+import dev.anhhoang.QTCSDLHD.services.CartCacheService;
+import dev.anhhoang.QTCSDLHD.services.FlashSaleService;
+import dev.anhhoang.QTCSDLHD.services.ProductCacheService;
 
 @RestController
 @RequestMapping("/api/seller/products")
@@ -28,6 +32,12 @@ public class SellerProductController {
     private UserRepository userRepository;
     @Autowired
     private ProductRepository productRepository;
+    @Autowired
+    private FlashSaleService flashSaleService;
+    @Autowired
+    private ProductCacheService productCacheService;
+    @Autowired
+    private CartCacheService cartCacheService;
 
     @PostMapping("/create")
     public ResponseEntity<?> createProduct(@RequestBody Product product, Principal principal) {
@@ -83,17 +93,45 @@ public class SellerProductController {
         if (!shopId.equals(product.getShopid())) {
             return ResponseEntity.status(403).body("You can only update your own products");
         }
-        // Cập nhật các trường
-        product.setName(updatedProduct.getName());
-        product.setDescription(updatedProduct.getDescription());
-        product.setPrice(updatedProduct.getPrice());
-        product.setImage_url(updatedProduct.getImage_url());
-        product.setCategory(updatedProduct.getCategory());
-        product.setStock(updatedProduct.getStock());
-        Product saved = productRepository.save(product);
+        // Chỉ $set các trường được sửa; khi flash sale, stock do Redis quản lý nên phải tắt flash sale trước khi sửa tồn kho
+        boolean stockChanged = !java.util.Objects.equals(product.getStock(), updatedProduct.getStock());
+        if (stockChanged && Boolean.TRUE.equals(product.getFlash_sale())) {
+            return ResponseEntity.badRequest().body("Turn off flash sale before changing stock");
+        }
+        Product saved = productRepository.updateDetails(id, updatedProduct, stockChanged);
+        if (saved == null) {
+            return ResponseEntity.badRequest().body("Turn off flash sale before changing stock");
+        }
         return ResponseEntity.ok(saved);
     }
 
+    @PutMapping("/{id}/flash-sale")
+    public ResponseEntity<?> setFlashSale(@PathVariable String id, @RequestParam boolean enabled,
+            Principal principal) {
+        Optional<User> userOpt = userRepository.findByEmail(principal.getName());
+        if (userOpt.isEmpty()) {
+            return ResponseEntity.status(401).body("User not found");
+        }
+        User user = userOpt.get();
+        boolean isSeller = user.getRoles() != null && user.getRoles().contains(Role.ROLE_SELLER);
+        if (!isSeller || user.getSellerProfile() == null) {
+            return ResponseEntity.status(403).body("Only sellers can update products");
+        }
+        Optional<Product> productOpt = productRepository.findById(id);
+        if (productOpt.isEmpty()) {
+            return ResponseEntity.status(404).body("Product not found");
+        }
+        if (!user.getSellerProfile().getShopId().equals(productOpt.get().getShopid())) {
+            return ResponseEntity.status(403).body("You can only update your own products");
+        }
+        try {
+            Product product = enabled ? flashSaleService.enable(id) : flashSaleService.disable(id);
+            return ResponseEntity.ok(product);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteProduct(@PathVariable String id, Principal principal) {
         Optional<User> userOpt = userRepository.findByEmail(principal.getName());
@@ -115,6 +153,9 @@ public class SellerProductController {
             return ResponseEntity.status(403).body("You can only delete your own products");
         }
         productRepository.deleteById(id);
+        // Giỏ hàng cache đang chứa sản phẩm sẽ nạp lại từ database và hiện là sản phẩm không còn tồn tại
+        productCacheService.evictProductFromCache(id);
+        cartCacheService.evictCartsContainingProduct(id);
         return ResponseEntity.ok("Product deleted successfully");
     }
 }
@@ -11,8 +11,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import dev.anhhoang.QTCSDLHD.dto.ChartBucketDTO;
+import dev.anhhoang.QTCSDLHD.dto.TopEntryDTO;
 import dev.anhhoang.QTCSDLHD.dto.UserProfileResponse;
 import dev.anhhoang.QTCSDLHD.services.OrderService;
+import dev.anhhoang.QTCSDLHD.services.SellerLeaderboardService;
 import dev.anhhoang.QTCSDLHD.services.UserService;
 
 @RestController
@@ -25,6 +28,9 @@ public class SellerRevenueController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private SellerLeaderboardService sellerLeaderboardService;
+
     @GetMapping("/overview")
     public ResponseEntity<?> getRevenueOverview(Principal principal) {
         try {
@@ -42,12 +48,30 @@ public class SellerRevenueController {
     @GetMapping("/chart")
     public ResponseEntity<?> getRevenueChart(
             @RequestParam(required = false, defaultValue = "monthly") String period,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String granularity,
             Principal principal) {
         try {
             UserProfileResponse userProfile = userService.findUserProfileByEmail(principal.getName());
             String sellerId = userProfile.getId();
+
+            // Khoảng thời gian tùy ý: ?from=2025-01-01&to=2025-03-31&granularity=daily|hourly|weekly|monthly|yearly
+            if (from != null || to != null) {
+                if (from == null || to == null) {
+                    return ResponseEntity.badRequest().body("Both 'from' and 'to' are required");
+                }
+                List<ChartBucketDTO> chartData = orderService.getOrderChartDataBySeller(
+                        sellerId, DateParams.parseStart(from), DateParams.parseEnd(to), granularity);
+                return ResponseEntity.ok(Map.of(
+                    "granularity", granularity != null ? granularity : "daily",
+                    "from", from,
+                    "to", to,
+                    "data", chartData
+                ));
+            }
             
-            List<Map<String, Object>> chartData = orderService.getOrderChartDataBySeller(sellerId, period);
+            List<ChartBucketDTO> chartData = orderService.getOrderChartDataBySeller(sellerId, period);
             
             Map<String, Object> response = Map.of(
                 "period", period,
@@ -59,4 +83,33 @@ public class SellerRevenueController {
             return ResponseEntity.badRequest().body("Error fetching chart data: " + e.getMessage());
         }
     }
+
+    @GetMapping("/top")
+    public ResponseEntity<?> getTop(
+            @RequestParam(required = false, defaultValue = "products") String type,
+            @RequestParam(required = false, defaultValue = "month") String period,
+            @RequestParam(required = false) Integer limit,
+            Principal principal) {
+        try {
+            UserProfileResponse userProfile = userService.findUserProfileByEmail(principal.getName());
+            if (userProfile.getSellerProfile() == null) {
+                return ResponseEntity.status(403).body("Only sellers can view leaderboards");
+            }
+            String shopId = userProfile.getSellerProfile().getShopId();
+
+            // ?type=products|customers&period=month|year|all&limit=10
+            SellerLeaderboardService.Type topType = SellerLeaderboardService.Type.from(type);
+            SellerLeaderboardService.Period topPeriod = SellerLeaderboardService.Period.from(period);
+            int topLimit = limit != null ? Math.max(1, Math.min(limit, 50)) : 10;
+            List<TopEntryDTO> top = sellerLeaderboardService.getTop(shopId, topType, topPeriod, topLimit);
+
+            return ResponseEntity.ok(Map.of(
+                "type", topType.name().toLowerCase(),
+                "period", topPeriod.name().toLowerCase(),
+                "data", top
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error fetching leaderboard: " + e.getMessage());
+        }
+    }
 }
@@ -151,6 +151,6 @@ public class VoucherController {
         }
         Product product = productOpt.get();
         return ResponseEntity.ok(voucherService.getApplicableVouchersForProduct(productId,
-                new java.math.BigDecimal(product.getPrice())));
+                product.getPrice()));
     }
 }
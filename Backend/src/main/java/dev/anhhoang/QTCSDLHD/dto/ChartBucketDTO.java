@@ -0,0 +1,31 @@
+package dev.anhhoang.QTCSDLHD.dto;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChartBucketDTO {
+    private String name;
+    private LocalDateTime bucketStart;
+    private int orders;
+    private int completedOrders;
+    private int cancelledOrders;
+    // Doanh thu (số đồng, như Money)
+    private long revenue;
+
+    public ChartBucketDTO() {
+    }
+
+    public ChartBucketDTO(String name) {
+        this.name = name;
+    }
+
+    public ChartBucketDTO(String name, LocalDateTime bucketStart) {
+        this.name = name;
+        this.bucketStart = bucketStart;
+    }
+}
@@ -0,0 +1,18 @@
+package dev.anhhoang.QTCSDLHD.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một trang kết quả phân trang theo cursor; nextCursor = null khi đã hết dữ liệu
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor;
+}
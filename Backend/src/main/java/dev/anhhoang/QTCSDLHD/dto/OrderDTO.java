@@ -3,18 +3,21 @@ package dev.anhhoang.QTCSDLHD.dto;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import dev.anhhoang.QTCSDLHD.models.Money;
 import lombok.Data;
 
 @Data
 public class OrderDTO {
     private String _id;
+    private String checkout_id;
+    private String shop_id;
     private String customer_id;
     private String fullName;
     private String phoneNumber;
     private String shipping_address;
     private String payment_method;
     private String status;
-    private double total;
+    private Money total;
     private List<OrderItemDTO> items;
     private LocalDateTime created_at;
     private LocalDateTime updated_at;
@@ -1,13 +1,16 @@
 package dev.anhhoang.QTCSDLHD.dto;
 
+import dev.anhhoang.QTCSDLHD.models.Money;
 import lombok.Data;
 
 @Data
 public class OrderItemDTO {
     private String product_id;
     private Integer quantity;
-    private Double price;
+    private Money price;
     private String voucherId;
     private String product_name;
     private String image_url;
+    private String shop_id;
+    private String shop_name;
 }
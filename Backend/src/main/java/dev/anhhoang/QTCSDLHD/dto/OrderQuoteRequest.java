@@ -0,0 +1,14 @@
+package dev.anhhoang.QTCSDLHD.dto;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+@Data
+public class OrderQuoteRequest {
+    @NotEmpty(message = "Order items cannot be empty")
+    @Valid
+    private List<CartItemRequest> items;
+}
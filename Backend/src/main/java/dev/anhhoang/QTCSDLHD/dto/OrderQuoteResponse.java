@@ -0,0 +1,34 @@
+package dev.anhhoang.QTCSDLHD.dto;
+
+import java.util.List;
+
+import dev.anhhoang.QTCSDLHD.models.Money;
+import lombok.Data;
+
+/**
+ * Báo giá giỏ hàng: tính bằng cùng engine với lúc tạo đơn
+ */
+@Data
+public class OrderQuoteResponse {
+    private List<Line> items;
+    private Money subtotal;
+    private Money discount;
+    private Money total;
+
+    @Data
+    public static class Line {
+        private String product_id;
+        private String product_name;
+        private String image_url;
+        private String shop_id;
+        private String shop_name;
+        private Integer quantity;
+        private Money unitPrice;
+        // Đơn giá sau voucher
+        private Money price;
+        private Money discount;
+        private Money lineTotal;
+        private String voucherId;
+        private boolean inStock;
+    }
+}
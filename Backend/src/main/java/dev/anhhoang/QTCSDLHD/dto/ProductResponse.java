@@ -1,5 +1,6 @@
 package dev.anhhoang.QTCSDLHD.dto;
 
+import dev.anhhoang.QTCSDLHD.models.Money;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -13,12 +14,13 @@ public class ProductResponse {
     private String _id;
     private String name;
     private String description;
-    private Double price;
+    private Money price;
     private Integer stock;
     private String image_url;
     private String category;
     private String shop_id;
     private String shop_name;
+    private Boolean flash_sale;
     private Integer quantity;
     private Integer purchaseCount;
     private Boolean viewed;
@@ -0,0 +1,19 @@
+package dev.anhhoang.QTCSDLHD.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một dòng trong bảng xếp hạng top sản phẩm / top khách hàng của shop.
+ * score có thể lớn hơn giá trị thật tối đa là error (đặc tính của Space-Saving).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopEntryDTO {
+    private String id;
+    private String name;
+    private double score;
+    private double error;
+}
@@ -0,0 +1,30 @@
+package dev.anhhoang.QTCSDLHD.jobs;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import dev.anhhoang.QTCSDLHD.services.CartWriteBehindService;
+
+/**
+ * Job chạy nền của chế độ write-behind giỏ hàng: ghi các giỏ hàng đã thay đổi trên Redis
+ * xuống collection carts, mỗi khách hàng một lần ghi cho mọi thay đổi gom được.
+ * Chỉ chạy khi carts.write-behind.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "carts.write-behind.enabled", havingValue = "true")
+public class CartWriteBehindFlushJob {
+
+    @Autowired
+    private CartWriteBehindService cartWriteBehindService;
+
+    @Scheduled(fixedDelayString = "${carts.write-behind.flush-interval-ms:3000}")
+    public void flush() {
+        try {
+            cartWriteBehindService.flushPending();
+        } catch (Exception e) {
+            System.err.println("Error flushing carts to MongoDB: " + e.getMessage());
+        }
+    }
+}
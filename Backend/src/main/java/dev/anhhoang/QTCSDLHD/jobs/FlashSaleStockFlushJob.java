@@ -0,0 +1,30 @@
+package dev.anhhoang.QTCSDLHD.jobs;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import dev.anhhoang.QTCSDLHD.services.FlashSaleService;
+
+/**
+ * Job chạy nền: ghi số lượng flash sale đã bán (gộp trên Redis) xuống Product.stock,
+ * mỗi lần một bulkWrite cho mọi sản phẩm thay vì một lệnh ghi cho mỗi checkout.
+ * Tắt bằng property flash-sale.flush.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(name = "flash-sale.flush.enabled", havingValue = "true", matchIfMissing = true)
+public class FlashSaleStockFlushJob {
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    @Scheduled(fixedDelayString = "${flash-sale.flush.interval-ms:500}")
+    public void flush() {
+        try {
+            flashSaleService.flushPending();
+        } catch (Exception e) {
+            System.err.println("Error persisting flash sale stock: " + e.getMessage());
+        }
+    }
+}
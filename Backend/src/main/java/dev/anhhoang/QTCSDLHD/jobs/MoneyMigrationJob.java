@@ -0,0 +1,73 @@
+package dev.anhhoang.QTCSDLHD.jobs;
+
+import java.util.List;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.models.Product;
+import dev.anhhoang.QTCSDLHD.models.SellerDailyStats;
+import dev.anhhoang.QTCSDLHD.models.Voucher;
+
+/**
+ * Job chạy một lần: chuyển các field tiền đang lưu dạng double / Decimal128 / chuỗi BigDecimal
+ * sang Int64 số đồng (kiểu Money), làm tròn HALF_UP. Chạy lại an toàn vì chỉ đụng tới
+ * các document chưa phải Int64. Bật bằng property money.migration.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "money.migration.enabled", havingValue = "true")
+public class MoneyMigrationJob implements ApplicationRunner {
+
+    private static final List<String> LEGACY_TYPES = List.of("double", "decimal", "string", "int");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        migrateField(mongoTemplate.getCollectionName(Product.class), "price");
+        migrateField(mongoTemplate.getCollectionName(Voucher.class), "minOrderValue");
+        migrateField(mongoTemplate.getCollectionName(SellerDailyStats.class), "revenue");
+        for (String collection : List.of(mongoTemplate.getCollectionName(Order.class), Order.ARCHIVE_COLLECTION)) {
+            migrateField(collection, "total");
+            migrateItemPrices(collection);
+        }
+    }
+
+    private void migrateField(String collection, String field) {
+        Document filter = new Document(field, new Document("$type", LEGACY_TYPES));
+        List<Document> pipeline = List.of(new Document("$set", new Document(field, toLong("$" + field))));
+        long modified = mongoTemplate.getCollection(collection).updateMany(filter, pipeline).getModifiedCount();
+        System.out.println("Migrated " + field + " to Money for " + modified + " documents in " + collection);
+    }
+
+    private void migrateItemPrices(String collection) {
+        Document filter = new Document("items.price", new Document("$type", LEGACY_TYPES));
+        Document price = new Document("$cond", List.of(
+                new Document("$in", List.of(new Document("$type", "$$item.price"), List.of("missing", "null"))),
+                "$$item.price",
+                toLong("$$item.price")));
+        Document items = new Document("$map", new Document("input", "$items")
+                .append("as", "item")
+                .append("in", new Document("$mergeObjects", List.of("$$item", new Document("price", price)))));
+        List<Document> pipeline = List.of(new Document("$set", new Document("items", items)));
+        long modified = mongoTemplate.getCollection(collection).updateMany(filter, pipeline).getModifiedCount();
+        System.out.println("Migrated item prices to Money for " + modified + " orders in " + collection);
+    }
+
+    // Làm tròn HALF_UP tới đồng ($round của MongoDB làm tròn HALF_EVEN)
+    private static Document toLong(String expression) {
+        Document decimal = new Document("$toDecimal", expression);
+        Document halfUp = new Document("$cond", List.of(
+                new Document("$gte", List.of(decimal, 0)),
+                new Document("$floor", new Document("$add", List.of(decimal, 0.5))),
+                new Document("$ceil", new Document("$subtract", List.of(decimal, 0.5)))));
+        return new Document("$toLong", halfUp);
+    }
+}
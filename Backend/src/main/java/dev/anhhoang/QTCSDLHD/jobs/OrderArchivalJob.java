@@ -0,0 +1,92 @@
+package dev.anhhoang.QTCSDLHD.jobs;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+
+/**
+ * Job chạy định kỳ: chuyển các đơn DELIVERED/CANCELLED cũ hơn orders.archive.after-days
+ * từ orders sang orders_archive, giữ collection orders (và index của nó) nhỏ.
+ * Các truy vấn đọc đơn hàng tự tìm thêm trong orders_archive.
+ * Bật bằng property orders.archive.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "orders.archive.enabled", havingValue = "true")
+public class OrderArchivalJob {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${orders.archive.after-days:180}")
+    private int archiveAfterDays;
+
+    @Scheduled(cron = "${orders.archive.cron:0 0 3 * * *}")
+    public void archiveOldOrders() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(archiveAfterDays);
+        Query query = new Query(Criteria.where("status").in("DELIVERED", "CANCELLED").and("created_at").lt(cutoff)
+                .and("stock_restore").exists(false))
+                .with(Sort.by(Sort.Direction.ASC, "created_at"))
+                .limit(BATCH_SIZE);
+
+        long archived = 0;
+        try {
+            List<Document> batch;
+            while (!(batch = mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Order.class)))
+                    .isEmpty()) {
+                archived += moveBatch(batch);
+            }
+            System.out.println("Archived " + archived + " orders created before " + cutoff);
+        } catch (Exception e) {
+            System.err.println("Error archiving orders (archived " + archived + " so far): " + e.getMessage());
+        }
+    }
+
+    // Chép sang archive trước (upsert nên chạy lại an toàn) rồi mới xóa khỏi orders.
+    // Chỉ xóa đơn còn đúng status / updated_at đã chép: đơn vừa bị đổi status xen giữa thì giữ lại ở orders
+    // và bỏ bản chép cũ trong archive, lần chạy sau xét lại
+    private long moveBatch(List<Document> batch) {
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.ARCHIVE_COLLECTION);
+        for (Document order : batch) {
+            bulkOps.replaceOne(Query.query(Criteria.where("_id").is(order.get("_id"))), order,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        bulkOps.execute();
+
+        BulkOperations removeOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+        for (Document order : batch) {
+            removeOps.remove(Query.query(Criteria.where("_id").is(order.get("_id"))
+                    .and("status").is(order.get("status"))
+                    .and("updated_at").is(order.get("updated_at"))));
+        }
+        long deleted = removeOps.execute().getDeletedCount();
+        if (deleted < batch.size()) {
+            List<Object> ids = batch.stream().map(order -> order.get("_id")).collect(Collectors.toList());
+            Query remaining = Query.query(Criteria.where("_id").in(ids));
+            remaining.fields().include("_id");
+            List<Object> changed = mongoTemplate.find(remaining, Document.class, mongoTemplate.getCollectionName(Order.class))
+                    .stream().map(order -> order.get("_id")).collect(Collectors.toList());
+            if (!changed.isEmpty()) {
+                mongoTemplate.remove(Query.query(Criteria.where("_id").in(changed)), Order.ARCHIVE_COLLECTION);
+                System.out.println("Skipped archiving " + changed.size() + " orders changed during archival");
+            }
+        }
+        return deleted;
+    }
+}
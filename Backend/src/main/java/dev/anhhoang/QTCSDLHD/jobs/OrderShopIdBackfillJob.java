@@ -0,0 +1,117 @@
+package dev.anhhoang.QTCSDLHD.jobs;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.models.OrderItem;
+import dev.anhhoang.QTCSDLHD.models.Product;
+import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+
+/**
+ * Job chạy một lần: gắn shop_id cho từng item và shop_ids cho các đơn hàng cũ,
+ * đồng thời chuẩn hóa status về chữ in hoa để truy vấn theo index.
+ * Bật bằng property orders.backfill.shop-ids.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "orders.backfill.shop-ids.enabled", havingValue = "true")
+public class OrderShopIdBackfillJob implements ApplicationRunner {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        normalizeStatuses();
+
+        Query query = new Query(Criteria.where("shop_ids").exists(false));
+        query.fields().include("items");
+        query.cursorBatchSize(BATCH_SIZE);
+
+        int updated = 0;
+        List<Order> batch = new ArrayList<>(BATCH_SIZE);
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            var iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == BATCH_SIZE) {
+                    updated += backfillBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            updated += backfillBatch(batch);
+        }
+        System.out.println("Backfilled shop ids for " + updated + " orders");
+    }
+
+    private void normalizeStatuses() {
+        Query query = new Query(Criteria.where("status").exists(true)
+                .nin("PENDING", "CONFIRMED", "SHIPPING", "DELIVERED", "CANCELLED"));
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("status").toValue(StringOperators.valueOf("status").toUpper());
+        long modified = mongoTemplate.updateMulti(query, update, Order.class).getModifiedCount();
+        System.out.println("Normalized status for " + modified + " orders");
+    }
+
+    private int backfillBatch(List<Order> orders) {
+        Set<String> productIds = new HashSet<>();
+        for (Order order : orders) {
+            if (order.getItems() != null) {
+                order.getItems().forEach(item -> productIds.add(item.getProduct_id()));
+            }
+        }
+        Map<String, String> shopByProduct = productRepository.findAllById(productIds).stream()
+                .filter(product -> product.getShopid() != null)
+                .collect(Collectors.toMap(Product::get_id, Product::getShopid, (a, b) -> a));
+
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Order.class);
+        for (Order order : orders) {
+            List<OrderItem> items = order.getItems() != null ? order.getItems() : List.of();
+            Update update = new Update();
+            for (int i = 0; i < items.size(); i++) {
+                String shopId = shopByProduct.get(items.get(i).getProduct_id());
+                if (shopId != null) {
+                    update.set("items." + i + ".shop_id", shopId);
+                }
+            }
+            List<String> shopIds = items.stream()
+                    .map(item -> shopByProduct.get(item.getProduct_id()))
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .collect(Collectors.toList());
+            update.set("shop_ids", shopIds);
+            // Đơn cũ chỉ có một shop thì cũng chính là đơn con của shop đó
+            if (shopIds.size() == 1) {
+                update.set("shop_id", shopIds.get(0));
+            }
+            bulkOps.updateOne(Query.query(Criteria.where("_id").is(order.get_id())), update);
+        }
+        return bulkOps.execute().getModifiedCount();
+    }
+}
@@ -0,0 +1,175 @@
+package dev.anhhoang.QTCSDLHD.jobs;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import dev.anhhoang.QTCSDLHD.models.OutboxEvent;
+import dev.anhhoang.QTCSDLHD.neo4j.services.RecommendationService;
+
+/**
+ * Job chạy nền: đọc collection outbox theo batch và ghi sang Neo4j bằng một câu
+ * UNWIND ... MERGE cho mỗi loại sự kiện. Batch lỗi được thử lại với backoff tăng dần.
+ * Mỗi batch được nhận (claim) bằng một updateMulti gắn mã batch và hạn giữ, nên nhiều node
+ * chạy job cùng lúc không gửi trùng một sự kiện.
+ * Tắt bằng property outbox.relay.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelayJob {
+
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(5);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${outbox.relay.lease-seconds:60}")
+    private long leaseSeconds;
+
+    private final AtomicLong relayedEvents = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile LocalDateTime lastSuccessAt;
+    private volatile String lastError;
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:1000}")
+    public void relay() {
+        try {
+            List<OutboxEvent> batch;
+            // Gửi liên tục khi còn tồn đọng, dừng khi gặp lỗi hoặc hết sự kiện đến hạn
+            while (!(batch = nextBatch()).isEmpty() && relayBatch(batch)) {
+                if (batch.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error reading outbox: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Thông số theo dõi: số sự kiện tồn đọng, độ trễ của sự kiện cũ nhất, lỗi gần nhất
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingEvents", mongoTemplate.count(new Query(), OutboxEvent.class));
+        OutboxEvent oldest = mongoTemplate.findOne(
+                new Query().with(Sort.by(Sort.Direction.ASC, "created_at")), OutboxEvent.class);
+        stats.put("lagSeconds", oldest != null
+                ? Duration.between(oldest.getCreated_at(), LocalDateTime.now()).getSeconds()
+                : 0L);
+        stats.put("relayedEvents", relayedEvents.get());
+        stats.put("failedBatches", failedBatches.get());
+        stats.put("lastSuccessAt", lastSuccessAt);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    // Nhận tối đa batchSize sự kiện đến hạn chưa bị node khác giữ (hoặc đã hết hạn giữ) với ba round trip:
+    // đọc id ứng viên, updateMulti gắn mã batch có điều kiện còn nhận được, rồi đọc lại theo mã batch
+    private List<OutboxEvent> nextBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        Criteria claimable = Criteria.where("next_attempt_at").lte(now)
+                .orOperator(Criteria.where("lease_until").is(null), Criteria.where("lease_until").lt(now));
+        Query candidates = new Query(claimable)
+                .with(Sort.by(Sort.Direction.ASC, "created_at"))
+                .limit(batchSize);
+        candidates.fields().include("_id");
+        List<String> ids = mongoTemplate.find(candidates, OutboxEvent.class).stream()
+                .map(OutboxEvent::get_id)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        String claimToken = UUID.randomUUID().toString();
+        // Node khác nhận trước thì sự kiện đó không còn thỏa điều kiện, không bị gắn mã của batch này
+        mongoTemplate.updateMulti(new Query(new Criteria().andOperator(Criteria.where("_id").in(ids), claimable)),
+                new Update().set("claimed_by", claimToken).set("lease_until", now.plusSeconds(leaseSeconds)),
+                OutboxEvent.class);
+        return mongoTemplate.find(Query.query(Criteria.where("claimed_by").is(claimToken))
+                .with(Sort.by(Sort.Direction.ASC, "created_at")), OutboxEvent.class);
+    }
+
+    private boolean relayBatch(List<OutboxEvent> batch) {
+        List<Map<String, Object>> purchases = new ArrayList<>();
+        List<Map<String, Object>> views = new ArrayList<>();
+        for (OutboxEvent event : batch) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("userId", event.getUser_id());
+            row.put("productId", event.getProduct_id());
+            if (OutboxEvent.PRODUCT_PURCHASED.equals(event.getType())) {
+                row.put("quantity", event.getQuantity() != null ? event.getQuantity() : 0);
+                purchases.add(row);
+            } else {
+                views.add(row);
+            }
+        }
+
+        String claimToken = batch.get(0).getClaimed_by();
+        try {
+            if (!views.isEmpty()) {
+                recommendationService.recordProductViews(views);
+            }
+            if (!purchases.isEmpty()) {
+                recommendationService.recordProductPurchases(purchases);
+            }
+        } catch (Exception e) {
+            scheduleRetry(batch, e);
+            return false;
+        }
+
+        mongoTemplate.remove(claimed(claimToken), OutboxEvent.class);
+        relayedEvents.addAndGet(batch.size());
+        lastSuccessAt = LocalDateTime.now();
+        return true;
+    }
+
+    // Backoff theo số lần thử: 2^attempts giây, tối đa 5 phút
+    private void scheduleRetry(List<OutboxEvent> batch, Exception error) {
+        failedBatches.incrementAndGet();
+        lastError = error.getMessage();
+        System.err.println("Error relaying " + batch.size() + " outbox events to Neo4j: " + error.getMessage());
+
+        int attempts = batch.stream().mapToInt(OutboxEvent::getAttempts).max().orElse(0) + 1;
+        Duration backoff = Duration.ofSeconds(1L << Math.min(attempts, 9));
+        if (backoff.compareTo(MAX_BACKOFF) > 0) {
+            backoff = MAX_BACKOFF;
+        }
+        mongoTemplate.updateMulti(claimed(batch.get(0).getClaimed_by()),
+                new Update().inc("attempts", 1)
+                        .set("last_error", error.getMessage())
+                        .set("next_attempt_at", LocalDateTime.now().plus(backoff))
+                        .unset("claimed_by")
+                        .unset("lease_until"),
+                OutboxEvent.class);
+    }
+
+    // Chỉ xử lý các sự kiện batch này còn đang giữ
+    private static Query claimed(String claimToken) {
+        return Query.query(Criteria.where("claimed_by").is(claimToken));
+    }
+}
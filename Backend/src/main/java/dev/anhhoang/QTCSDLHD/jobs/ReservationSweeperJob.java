@@ -0,0 +1,32 @@
+package dev.anhhoang.QTCSDLHD.jobs;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import dev.anhhoang.QTCSDLHD.services.InventoryReservationService;
+
+/**
+ * Job chạy nền: trả lại hàng của các lượt checkout đã hết thời gian giữ.
+ * Tắt bằng property inventory.reservation.sweeper.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.reservation.sweeper.enabled", havingValue = "true", matchIfMissing = true)
+public class ReservationSweeperJob {
+
+    @Autowired
+    private InventoryReservationService reservationService;
+
+    @Scheduled(fixedDelayString = "${inventory.reservation.sweeper.interval-ms:5000}")
+    public void releaseExpiredReservations() {
+        try {
+            int released = reservationService.releaseExpired();
+            if (released > 0) {
+                System.out.println("Released " + released + " expired stock reservations");
+            }
+        } catch (Exception e) {
+            System.err.println("Error releasing expired stock reservations: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package dev.anhhoang.QTCSDLHD.jobs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.models.SellerDailyStats;
+import dev.anhhoang.QTCSDLHD.services.SellerStatsService;
+
+/**
+ * Job chạy một lần: tính lại toàn bộ seller_daily_stats từ orders và orders_archive.
+ * Chạy sau OrderShopIdBackfillJob, khi không có đơn hàng mới được tạo.
+ * Bật bằng property seller-stats.rebuild.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "seller-stats.rebuild.enabled", havingValue = "true")
+public class SellerStatsRebuildJob implements ApplicationRunner {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Query query = new Query(Criteria.where("shop_ids").exists(true));
+        query.fields().include("shop_ids", "status", "created_at", "items");
+        query.cursorBatchSize(1000);
+
+        Map<String, SellerDailyStats> rollups = new HashMap<>();
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class)) {
+            orders.forEach(order -> accumulate(rollups, order));
+        }
+        try (Stream<Order> orders = mongoTemplate.stream(query, Order.class, Order.ARCHIVE_COLLECTION)) {
+            orders.forEach(order -> accumulate(rollups, order));
+        }
+
+        mongoTemplate.remove(new Query(), SellerDailyStats.class);
+        if (!rollups.isEmpty()) {
+            mongoTemplate.insertAll(rollups.values());
+        }
+        System.out.println("Rebuilt " + rollups.size() + " seller daily stats documents");
+    }
+
+    private void accumulate(Map<String, SellerDailyStats> rollups, Order order) {
+        if (order.getCreated_at() == null) {
+            return;
+        }
+        String status = order.getStatus() == null ? "UNKNOWN" : order.getStatus().toUpperCase();
+        for (String shopId : order.getShop_ids()) {
+            String id = SellerStatsService.statsId(shopId, order.getCreated_at().toLocalDate());
+            SellerDailyStats day = rollups.computeIfAbsent(id, key -> {
+                SellerDailyStats stats = new SellerDailyStats();
+                stats.set_id(key);
+                stats.setShop_id(shopId);
+                stats.setDate(order.getCreated_at().toLocalDate());
+                stats.setStatus_counts(new HashMap<>());
+                return stats;
+            });
+            day.setOrders(day.getOrders() + 1);
+            day.getStatus_counts().merge(status, 1L, Long::sum);
+            if ("DELIVERED".equals(status)) {
+                day.setCompleted_orders(day.getCompleted_orders() + 1);
+                day.setRevenue(day.getRevenue() + SellerStatsService.shopRevenue(order, shopId));
+            } else if ("CANCELLED".equals(status)) {
+                day.setCancelled_orders(day.getCancelled_orders() + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package dev.anhhoang.QTCSDLHD.jobs;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.services.InventoryService;
+
+/**
+ * Job chạy nền: hoàn kho lại cho các đơn đã hủy nhưng còn marker stock_restore=RESTORING
+ * quá stale-seconds (bulkWrite cộng stock bị lỗi hoặc tiến trình dừng giữa chừng).
+ * Tắt bằng property inventory.restore-replay.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.restore-replay.enabled", havingValue = "true", matchIfMissing = true)
+public class StockRestoreReplayJob {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    // Marker mới hơn ngưỡng này có thể còn đang được request hủy đơn xử lý
+    @Value("${inventory.restore-replay.stale-seconds:60}")
+    private long staleSeconds;
+
+    @Scheduled(fixedDelayString = "${inventory.restore-replay.interval-ms:30000}")
+    public void replayStuckRestores() {
+        Query query = new Query(Criteria.where("stock_restore").is(InventoryService.RESTORING)
+                .and("updated_at").lt(LocalDateTime.now().minusSeconds(staleSeconds)))
+                .with(Sort.by(Sort.Direction.ASC, "updated_at"))
+                .limit(BATCH_SIZE);
+        List<Order> stuck;
+        try {
+            stuck = mongoTemplate.find(query, Order.class);
+        } catch (Exception e) {
+            System.err.println("Error loading orders with pending stock restore: " + e.getMessage());
+            return;
+        }
+
+        int replayed = 0;
+        for (Order order : stuck) {
+            try {
+                if (inventoryService.replayRestore(order)) {
+                    replayed++;
+                }
+            } catch (Exception e) {
+                System.err.println("Error replaying stock restore for order " + order.get_id() + ": " + e.getMessage());
+            }
+        }
+        if (replayed > 0) {
+            System.out.println("Replayed stock restore for " + replayed + " cancelled orders");
+        }
+    }
+}
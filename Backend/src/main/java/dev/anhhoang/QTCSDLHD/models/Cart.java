@@ -2,6 +2,7 @@ package dev.anhhoang.QTCSDLHD.models;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -11,6 +12,7 @@ import java.util.List;
 public class Cart {
     @Id
     private String _id;
+    @Indexed(unique = true) // Mỗi khách hàng một giỏ, upsert trong CartRepositoryCustomImpl dựa vào index này
     private String customerId;
     private List<CartItem> items;
     private String status; // active, checked_out, etc.
@@ -0,0 +1,113 @@
+package dev.anhhoang.QTCSDLHD.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Số tiền VND, lưu bằng long số đồng (VND không có đơn vị lẻ).
+ * Bất biến; cộng trừ nhân trên long nên không lệch do làm tròn số thực.
+ * JSON và MongoDB đều lưu dạng số nguyên (xem MongoConfig).
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private final long amount;
+
+    private Money(long amount) {
+        this.amount = amount;
+    }
+
+    public static Money of(long amount) {
+        return amount == 0 ? ZERO : new Money(amount);
+    }
+
+    /**
+     * Chuyển từ số thập phân (dữ liệu cũ, input từ client), làm tròn tới đồng
+     */
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Money of(BigDecimal amount) {
+        return of(amount.setScale(0, RoundingMode.HALF_UP).longValueExact());
+    }
+
+    public static Money of(Number amount) {
+        if (amount == null) {
+            return null;
+        }
+        if (amount instanceof Long || amount instanceof Integer) {
+            return of(amount.longValue());
+        }
+        return of(new BigDecimal(amount.toString()));
+    }
+
+    @JsonValue
+    public long getAmount() {
+        return amount;
+    }
+
+    public double doubleValue() {
+        return amount;
+    }
+
+    public Money plus(Money other) {
+        return of(Math.addExact(amount, other.amount));
+    }
+
+    public Money minus(Money other) {
+        return of(Math.subtractExact(amount, other.amount));
+    }
+
+    public Money times(long quantity) {
+        return of(Math.multiplyExact(amount, quantity));
+    }
+
+    /**
+     * Chia đều, làm tròn HALF_UP tới đồng
+     */
+    public Money dividedBy(long divisor) {
+        long quotient = amount / divisor;
+        long remainder = amount % divisor;
+        if (Math.abs(remainder) * 2 >= Math.abs(divisor)) {
+            quotient += Long.signum(amount) * Long.signum(divisor);
+        }
+        return of(quotient);
+    }
+
+    /**
+     * percent% của số tiền, làm tròn HALF_UP tới đồng
+     */
+    public Money percent(BigDecimal percent) {
+        return of(BigDecimal.valueOf(amount).multiply(percent).movePointLeft(2));
+    }
+
+    public Money min(Money other) {
+        return amount <= other.amount ? this : other;
+    }
+
+    public boolean isLessThan(Money other) {
+        return amount < other.amount;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(amount, other.amount);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Money && ((Money) other).amount == amount;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(amount);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(amount);
+    }
+}
@@ -4,6 +4,9 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -11,9 +14,27 @@ import lombok.Data;
 
 @Data
 @Document(collection = "orders")
+@CompoundIndexes({
+    @CompoundIndex(name = "shop_status_created_idx", def = "{'shop_ids': 1, 'status': 1, 'created_at': -1}"),
+    // Index cho phân trang keyset theo (created_at, _id)
+    @CompoundIndex(name = "shop_created_id_idx", def = "{'shop_ids': 1, 'created_at': -1, '_id': -1}"),
+    @CompoundIndex(name = "customer_created_id_idx", def = "{'customer_id': 1, 'created_at': -1, '_id': -1}"),
+    @CompoundIndex(name = "checkout_idx", def = "{'checkout_id': 1}"),
+    // Index cho job lưu trữ tìm đơn đã kết thúc theo tuổi
+    @CompoundIndex(name = "status_created_idx", def = "{'status': 1, 'created_at': 1}")
+})
 public class Order {
+    // Đơn DELIVERED/CANCELLED cũ được chuyển sang collection này (xem OrderArchivalJob)
+    public static final String ARCHIVE_COLLECTION = "orders_archive";
+
     @Id
     private String _id;
+    // Mã lần thanh toán: các đơn con (mỗi shop một đơn) của cùng một giỏ hàng dùng chung mã này
+    @Field("checkout_id")
+    private String checkout_id;
+    // Shop sở hữu đơn con
+    @Field("shop_id")
+    private String shop_id;
     @Field("customer_id")
     private String customer_id;
     private String fullName;
@@ -22,8 +43,18 @@ public class Order {
     private String payment_method;
     private BankAccount bankAccount;
     private String status;
-    private double total;
+    private Money total;
     private List<OrderItem> items;
+    // Danh sách shop có sản phẩm trong đơn, dùng cho các truy vấn phía seller
+    @Field("shop_ids")
+    private List<String> shop_ids;
+    // Đánh dấu đơn đã hoàn kho khi hủy, tránh cộng stock hai lần
+    @Field("stock_restored")
+    private Boolean stock_restored;
+    // RESTORING khi đơn đã hủy nhưng chưa cộng xong stock; chỉ bị xóa sau khi hoàn kho thành công
+    @Indexed(name = "stock_restore_idx", sparse = true)
+    @Field("stock_restore")
+    private String stock_restore;
     private LocalDateTime created_at;
     private LocalDateTime updated_at;
-}
\ No newline at end of file
+}
@@ -6,6 +6,11 @@ import lombok.Data;
 public class OrderItem {
     private String product_id;
     private Integer quantity;
-    private Double price;
+    private Money price;
     private String voucherId;
-}
\ No newline at end of file
+    private String shop_id;
+    // Thông tin sản phẩm tại thời điểm đặt hàng, đọc lịch sử đơn không cần tra products
+    private String product_name;
+    private String image_url;
+    private String shop_name;
+}
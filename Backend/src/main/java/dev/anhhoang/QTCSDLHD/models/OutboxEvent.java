@@ -0,0 +1,39 @@
+package dev.anhhoang.QTCSDLHD.models;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import lombok.Data;
+
+/**
+ * Sự kiện chờ đẩy sang Neo4j (mua / xem sản phẩm), được OutboxRelayJob gửi theo batch
+ */
+@Data
+@Document(collection = "outbox")
+@CompoundIndex(name = "next_attempt_idx", def = "{'next_attempt_at': 1, 'created_at': 1}")
+public class OutboxEvent {
+    public static final String PRODUCT_PURCHASED = "PRODUCT_PURCHASED";
+    public static final String PRODUCT_VIEWED = "PRODUCT_VIEWED";
+
+    @Id
+    private String _id;
+    private String type;
+    @Field("user_id")
+    private String user_id;
+    @Field("product_id")
+    private String product_id;
+    private Integer quantity;
+    private int attempts;
+    private String last_error;
+    private LocalDateTime created_at;
+    private LocalDateTime next_attempt_at;
+    // Mã batch đang gửi sự kiện và hạn giữ; hết hạn thì node khác được nhận lại
+    @Indexed(name = "claimed_by_idx", sparse = true)
+    private String claimed_by;
+    private LocalDateTime lease_until;
+}
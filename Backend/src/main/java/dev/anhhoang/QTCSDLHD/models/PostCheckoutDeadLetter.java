@@ -0,0 +1,24 @@
+package dev.anhhoang.QTCSDLHD.models;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * Bước xử lý sau checkout đã thử lại hết số lần mà vẫn lỗi, lưu lại để xử lý thủ công
+ */
+@Data
+@Document(collection = "post_checkout_dead_letters")
+public class PostCheckoutDeadLetter {
+    @Id
+    private String _id;
+    private String checkout_id;
+    private String customer_id;
+    private String step;
+    private int attempts;
+    private String error;
+    private LocalDateTime created_at;
+}
@@ -17,7 +17,7 @@ public class Product {
     private String _id;
     private String name;
     private String description;
-    private Double price;
+    private Money price;
     private Integer stock;
     private String image_url;
     private String category;
@@ -25,6 +25,8 @@ public class Product {
     private String shopid;
     @Field("shop_name")
     private String shopname;
+    // Đang flash sale: stock chính xác nằm trên Redis (FlashSaleService), field stock được cập nhật trễ
+    private Boolean flash_sale;
     @CreatedDate
     private LocalDateTime created_at;
     @LastModifiedDate
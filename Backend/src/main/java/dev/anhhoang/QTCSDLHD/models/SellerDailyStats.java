@@ -0,0 +1,34 @@
+package dev.anhhoang.QTCSDLHD.models;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import lombok.Data;
+
+/**
+ * Số liệu tổng hợp theo ngày của một shop, được cộng dồn mỗi khi đơn hàng thay đổi.
+ * _id có dạng {shopId}:{yyyy-MM-dd}, ngày là ngày tạo đơn hàng.
+ */
+@Data
+@Document(collection = "seller_daily_stats")
+@CompoundIndex(name = "shop_date_idx", def = "{'shop_id': 1, 'date': 1}")
+public class SellerDailyStats {
+    @Id
+    private String _id;
+    @Field("shop_id")
+    private String shop_id;
+    private LocalDate date;
+    private long orders;
+    @Field("completed_orders")
+    private long completed_orders;
+    @Field("cancelled_orders")
+    private long cancelled_orders;
+    private long revenue;
+    @Field("status_counts")
+    private Map<String, Long> status_counts;
+}
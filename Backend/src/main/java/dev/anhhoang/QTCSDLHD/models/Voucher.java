@@ -17,9 +17,10 @@ public class Voucher {
 
     private DiscountType discountType; // PERCENTAGE hoặc FIXED
 
+    // PERCENTAGE: phần trăm giảm; FIXED: số tiền giảm (VND)
     private BigDecimal discountValue;
 
-    private BigDecimal minOrderValue;
+    private Money minOrderValue;
 
     private LocalDateTime startDate;
 
@@ -72,11 +73,11 @@ public class Voucher {
         this.discountValue = discountValue;
     }
 
-    public BigDecimal getMinOrderValue() {
+    public Money getMinOrderValue() {
         return minOrderValue;
     }
 
-    public void setMinOrderValue(BigDecimal minOrderValue) {
+    public void setMinOrderValue(Money minOrderValue) {
         this.minOrderValue = minOrderValue;
     }
 
@@ -1,6 +1,7 @@
 package dev.anhhoang.QTCSDLHD.neo4j.services;
 
 import java.util.List;
+import java.util.Map;
 import dev.anhhoang.QTCSDLHD.dto.ProductResponse;
 
 public interface RecommendationService {
@@ -10,6 +11,11 @@ public interface RecommendationService {
 
     void recordProductPurchase(String userId, String productId, int quantity);
 
+    // Ghi nhiều sự kiện trong một câu lệnh UNWIND; mỗi phần tử gồm userId, productId (và quantity)
+    void recordProductViews(List<Map<String, Object>> views);
+
+    void recordProductPurchases(List<Map<String, Object>> purchases);
+
     List<ProductResponse> getRecommendedProductsForUser(String userId);
 
     List<ProductResponse> getSimilarProductsForProduct(String productId, String userId);
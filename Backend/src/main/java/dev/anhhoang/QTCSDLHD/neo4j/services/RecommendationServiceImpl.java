@@ -53,6 +53,24 @@ public class RecommendationServiceImpl implements RecommendationService {
                 .run();
     }
 
+    @Override
+    @Transactional
+    public void recordProductViews(List<Map<String, Object>> views) {
+        neo4jClient.query(
+                "UNWIND $events AS e MERGE (u:User {id: e.userId}) MERGE (p:Product {id: e.productId}) MERGE (u)-[v:VIEWED]->(p) ON CREATE SET v.timestamp = datetime() ON MATCH SET v.timestamp = datetime()")
+                .bind(views).to("events")
+                .run();
+    }
+
+    @Override
+    @Transactional
+    public void recordProductPurchases(List<Map<String, Object>> purchases) {
+        neo4jClient.query(
+                "UNWIND $events AS e MERGE (u:User {id: e.userId}) MERGE (p:Product {id: e.productId}) MERGE (u)-[b:BOUGHT]->(p) ON CREATE SET b.quantity = e.quantity, b.timestamp = datetime() ON MATCH SET b.quantity = b.quantity + e.quantity, b.timestamp = datetime()")
+                .bind(purchases).to("events")
+                .run();
+    }
+
     @Override
     public List<String> getRecommendedProductIdsForUser(String userId) {
         // Deprecated: not used, but required for interface
@@ -296,8 +314,8 @@ public class RecommendationServiceImpl implements RecommendationService {
         // 4. Tính điểm tương đồng và sắp xếp
         List<Product> scoredProducts = similarProducts.stream()
                 .map(product -> {
-                    double priceDiff = Math.abs(product.getPrice() - currentProduct.getPrice());
-                    double priceRatio = priceDiff / currentProduct.getPrice();
+                    double priceDiff = Math.abs(product.getPrice().doubleValue() - currentProduct.getPrice().doubleValue());
+                    double priceRatio = priceDiff / currentProduct.getPrice().doubleValue();
 
                     int priceScore;
                     if (priceRatio <= 0.3)
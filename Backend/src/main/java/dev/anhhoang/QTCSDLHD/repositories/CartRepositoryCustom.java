@@ -0,0 +1,24 @@
+package dev.anhhoang.QTCSDLHD.repositories;
+
+import java.util.Collection;
+
+public interface CartRepositoryCustom {
+    /**
+     * Cộng quantity cho sản phẩm trong giỏ ($inc theo vị trí), chưa có thì $push thêm dòng mới,
+     * chưa có giỏ thì tạo giỏ (upsert). Trả về số lượng mới của sản phẩm.
+     */
+    int addItem(String customerId, String productId, int quantity);
+
+    /**
+     * Đặt quantity cho sản phẩm đã có trong giỏ; trả về false nếu giỏ không có sản phẩm này
+     */
+    boolean setItemQuantity(String customerId, String productId, int quantity);
+
+    /**
+     * Xóa sản phẩm khỏi giỏ ($pull); trả về false nếu giỏ không có sản phẩm này
+     */
+    boolean removeItem(String customerId, String productId);
+
+    // Xóa các sản phẩm đã đặt hàng khỏi giỏ bằng một lệnh $pull
+    void removeItems(String customerId, Collection<String> productIds);
+}
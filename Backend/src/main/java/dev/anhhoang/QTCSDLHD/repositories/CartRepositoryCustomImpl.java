@@ -0,0 +1,95 @@
+package dev.anhhoang.QTCSDLHD.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import dev.anhhoang.QTCSDLHD.models.Cart;
+import dev.anhhoang.QTCSDLHD.models.CartItem;
+
+/**
+ * Các thao tác trên giỏ hàng bằng update theo từng trường ($inc/$set/$push/$pull) thay vì
+ * đọc cả document rồi save lại, nên hai request cùng lúc không ghi đè mất thay đổi của nhau.
+ * Dựa vào unique index trên carts.customerId để upsert không tạo ra hai giỏ cho một khách hàng.
+ */
+public class CartRepositoryCustomImpl implements CartRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public int addItem(String customerId, String productId, int quantity) {
+        Integer newQuantity = incrementItem(customerId, productId, quantity);
+        if (newQuantity != null) {
+            return newQuantity;
+        }
+
+        // Giỏ chưa có sản phẩm (hoặc chưa có giỏ): thêm dòng mới, upsert tạo giỏ nếu cần
+        CartItem item = new CartItem();
+        item.setProduct_id(productId);
+        item.setQuantity(quantity);
+        Query query = Query.query(Criteria.where("customerId").is(customerId)
+                .and("items.product_id").ne(productId));
+        Update update = touch(new Update().push("items", item))
+                .setOnInsert("created_at", LocalDateTime.now());
+        try {
+            mongoTemplate.upsert(query, update, Cart.class);
+            return quantity;
+        } catch (DuplicateKeyException e) {
+            // Request khác vừa thêm đúng sản phẩm này: giỏ đã có dòng, cộng dồn vào đó
+            newQuantity = incrementItem(customerId, productId, quantity);
+            if (newQuantity == null) {
+                throw new RuntimeException("Could not add product to cart, please retry");
+            }
+            return newQuantity;
+        }
+    }
+
+    @Override
+    public boolean setItemQuantity(String customerId, String productId, int quantity) {
+        Update update = touch(new Update().set("items.$.quantity", quantity));
+        return mongoTemplate.updateFirst(itemQuery(customerId, productId), update, Cart.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public boolean removeItem(String customerId, String productId) {
+        Update update = touch(new Update().pull("items", Query.query(Criteria.where("product_id").is(productId))));
+        return mongoTemplate.updateFirst(itemQuery(customerId, productId), update, Cart.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public void removeItems(String customerId, Collection<String> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        Update update = touch(new Update().pull("items", Query.query(Criteria.where("product_id").in(productIds))));
+        mongoTemplate.updateFirst(Query.query(Criteria.where("customerId").is(customerId)), update, Cart.class);
+    }
+
+    // $inc theo vị trí và trả về số lượng mới; null nếu giỏ chưa có sản phẩm
+    private Integer incrementItem(String customerId, String productId, int quantity) {
+        Query query = itemQuery(customerId, productId);
+        query.fields().include("items.$");
+        Cart cart = mongoTemplate.findAndModify(query, touch(new Update().inc("items.$.quantity", quantity)),
+                FindAndModifyOptions.options().returnNew(true), Cart.class);
+        if (cart == null || cart.getItems() == null || cart.getItems().isEmpty()) {
+            return null;
+        }
+        return cart.getItems().get(0).getQuantity();
+    }
+
+    private static Query itemQuery(String customerId, String productId) {
+        return Query.query(Criteria.where("customerId").is(customerId).and("items.product_id").is(productId));
+    }
+
+    private static Update touch(Update update) {
+        return update.set("status", "active").set("updated_at", LocalDateTime.now());
+    }
+}
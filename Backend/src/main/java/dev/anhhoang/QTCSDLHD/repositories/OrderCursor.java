@@ -0,0 +1,49 @@
+package dev.anhhoang.QTCSDLHD.repositories;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+
+/**
+ * Cursor phân trang đơn hàng theo (created_at, _id), mã hóa base64 để client xem như chuỗi mờ
+ */
+public final class OrderCursor {
+
+    private final LocalDateTime createdAt;
+    private final String id;
+
+    private OrderCursor(LocalDateTime createdAt, String id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public static String encode(Order order) {
+        long millis = order.getCreated_at().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        String raw = millis + ":" + order.get_id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            long millis = Long.parseLong(raw.substring(0, separator));
+            LocalDateTime createdAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+            return new OrderCursor(createdAt, raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package dev.anhhoang.QTCSDLHD.repositories;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
@@ -9,7 +10,14 @@ import org.springframework.stereotype.Repository;
 import dev.anhhoang.QTCSDLHD.models.Order;
 
 @Repository
-public interface OrderRepository extends MongoRepository<Order, String> {
+public interface OrderRepository extends MongoRepository<Order, String>, OrderRepositoryCustom {
     @Query("{ 'customer_id': ?0 }")
     List<Order> findByCustomer_id(String customerId);
-}
\ No newline at end of file
+
+    // Đơn hàng thuộc shop: một lần đọc theo _id, quyền sở hữu kiểm tra ngay trong query
+    @Query("{ '_id': ?0, 'shop_ids': ?1 }")
+    Optional<Order> findByIdAndShopId(String orderId, String shopId);
+
+    @Query("{ 'checkout_id': ?0 }")
+    List<Order> findByCheckout_id(String checkoutId);
+}
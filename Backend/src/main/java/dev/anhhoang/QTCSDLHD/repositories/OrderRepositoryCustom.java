@@ -0,0 +1,46 @@
+package dev.anhhoang.QTCSDLHD.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+
+public interface OrderRepositoryCustom {
+    /**
+     * Lấy các đơn hàng có sản phẩm của shop, lọc theo status và khoảng created_at
+     * ngay trên MongoDB (dùng index shop_ids + status + created_at).
+     * Các tham số null sẽ được bỏ qua. Kết quả sắp xếp created_at giảm dần.
+     * Các truy vấn danh sách đọc cả collection orders và orders_archive.
+     */
+    List<Order> findShopOrders(String shopId, String status, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Giống findShopOrders nhưng phân trang theo cursor (created_at, _id) giảm dần.
+     * Trả về tối đa limit + 1 đơn để biết còn trang tiếp theo hay không.
+     */
+    List<Order> findShopOrdersAfter(String shopId, String status, LocalDateTime from, LocalDateTime to,
+            OrderCursor cursor, int limit);
+
+    /**
+     * Đơn hàng của customer phân trang theo cursor (created_at, _id) giảm dần, tối đa limit + 1 đơn
+     */
+    List<Order> findCustomerOrdersAfter(String customerId, String status, OrderCursor cursor, int limit);
+
+    /**
+     * Đổi status bằng findAndModify chỉ khi đơn vẫn đang ở expectedStatus, chỉ $set status và updated_at
+     * (không ghi đè các trường khác như stock_restored).
+     * Trả về đơn trước khi đổi, hoặc null nếu status đã bị request khác đổi trước đó.
+     */
+    Order updateStatusIf(String orderId, String expectedStatus, String newStatus);
+
+    // Tra cứu trong collection lưu trữ (orders_archive) khi không còn thấy đơn ở orders
+    Optional<Order> findArchivedById(String orderId);
+
+    Optional<Order> findArchivedShopOrder(String orderId, String shopId);
+
+    /**
+     * Đơn đã lưu trữ của customer, lọc status (null là tất cả) và chỉ lấy limit đơn mới nhất ngay trên MongoDB
+     */
+    List<Order> findArchivedCustomerOrders(String customerId, String status, int limit);
+}
@@ -0,0 +1,122 @@
+package dev.anhhoang.QTCSDLHD.repositories;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "created_at", "_id");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Order> findShopOrders(String shopId, String status, LocalDateTime from, LocalDateTime to) {
+        Query query = new Query(shopCriteria(shopId, status, from, to))
+                .with(Sort.by(Sort.Direction.DESC, "created_at"));
+        List<Order> orders = new ArrayList<>(mongoTemplate.find(query, Order.class));
+        orders.addAll(mongoTemplate.find(query, Order.class, Order.ARCHIVE_COLLECTION));
+        return mergeNewestFirst(orders, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Order> findShopOrdersAfter(String shopId, String status, LocalDateTime from, LocalDateTime to,
+            OrderCursor cursor, int limit) {
+        return findPage(shopCriteria(shopId, status, from, to), cursor, limit);
+    }
+
+    @Override
+    public List<Order> findCustomerOrdersAfter(String customerId, String status, OrderCursor cursor, int limit) {
+        return findPage(customerCriteria(customerId, status), cursor, limit);
+    }
+
+    private List<Order> findPage(Criteria criteria, OrderCursor cursor, int limit) {
+        if (cursor != null) {
+            // Keyset: các đơn đứng sau cursor theo thứ tự (created_at, _id) giảm dần
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where("created_at").lt(cursor.getCreatedAt()),
+                    Criteria.where("created_at").is(cursor.getCreatedAt()).and("_id").lt(cursor.getId())));
+        }
+        Query query = new Query(criteria).with(NEWEST_FIRST).limit(limit + 1);
+        // Lấy limit + 1 đơn ở cả hai collection rồi trộn lại, kết quả vẫn đúng thứ tự keyset
+        List<Order> orders = new ArrayList<>(mongoTemplate.find(query, Order.class));
+        orders.addAll(mongoTemplate.find(query, Order.class, Order.ARCHIVE_COLLECTION));
+        return mergeNewestFirst(orders, limit + 1);
+    }
+
+    @Override
+    public Order updateStatusIf(String orderId, String expectedStatus, String newStatus) {
+        Query query = Query.query(Criteria.where("_id").is(orderId).and("status").is(expectedStatus));
+        Update update = new Update().set("status", newStatus).set("updated_at", LocalDateTime.now());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(false), Order.class);
+    }
+
+    @Override
+    public Optional<Order> findArchivedById(String orderId) {
+        return Optional.ofNullable(mongoTemplate.findById(orderId, Order.class, Order.ARCHIVE_COLLECTION));
+    }
+
+    @Override
+    public Optional<Order> findArchivedShopOrder(String orderId, String shopId) {
+        Query query = Query.query(Criteria.where("_id").is(orderId).and("shop_ids").is(shopId));
+        return Optional.ofNullable(mongoTemplate.findOne(query, Order.class, Order.ARCHIVE_COLLECTION));
+    }
+
+    @Override
+    public List<Order> findArchivedCustomerOrders(String customerId, String status, int limit) {
+        Query query = new Query(customerCriteria(customerId, status)).with(NEWEST_FIRST).limit(limit);
+        return mongoTemplate.find(query, Order.class, Order.ARCHIVE_COLLECTION);
+    }
+
+    // Sắp xếp (created_at, _id) giảm dần; bỏ bản trùng khi job lưu trữ đã chép sang archive nhưng chưa xóa
+    private static List<Order> mergeNewestFirst(List<Order> orders, int limit) {
+        Map<String, Order> unique = new LinkedHashMap<>();
+        for (Order order : orders) {
+            unique.putIfAbsent(order.get_id(), order);
+        }
+        return unique.values().stream()
+                .sorted(Comparator.comparing(Order::getCreated_at, Comparator.nullsLast(Comparator.reverseOrder()))
+                        .thenComparing(Order::get_id, Comparator.reverseOrder()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private Criteria customerCriteria(String customerId, String status) {
+        Criteria criteria = Criteria.where("customer_id").is(customerId);
+        if (status != null && !status.isEmpty()) {
+            criteria = criteria.and("status").is(status.toUpperCase());
+        }
+        return criteria;
+    }
+
+    private Criteria shopCriteria(String shopId, String status, LocalDateTime from, LocalDateTime to) {
+        Criteria criteria = Criteria.where("shop_ids").is(shopId);
+        if (status != null && !status.isEmpty()) {
+            criteria = criteria.and("status").is(status.toUpperCase());
+        }
+        if (from != null && to != null) {
+            criteria = criteria.and("created_at").gte(from).lt(to);
+        } else if (from != null) {
+            criteria = criteria.and("created_at").gte(from);
+        } else if (to != null) {
+            criteria = criteria.and("created_at").lt(to);
+        }
+        return criteria;
+    }
+}
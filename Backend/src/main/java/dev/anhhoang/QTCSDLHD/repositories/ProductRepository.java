@@ -11,7 +11,7 @@ import org.springframework.data.mongodb.repository.Query;
 import dev.anhhoang.QTCSDLHD.models.Product;
 
 @Repository
-public interface ProductRepository extends MongoRepository<Product, String> {
+public interface ProductRepository extends MongoRepository<Product, String>, ProductRepositoryCustom {
     List<Product> findByNameContainingIgnoreCase(String name);
 
     List<Product> findByShopid(String shopid);
@@ -0,0 +1,38 @@
+package dev.anhhoang.QTCSDLHD.repositories;
+
+import java.util.Map;
+
+import dev.anhhoang.QTCSDLHD.models.Product;
+
+public interface ProductRepositoryCustom {
+    /**
+     * Cộng stock cho nhiều sản phẩm trong một lệnh bulkWrite ($inc),
+     * không ghi đè toàn bộ document product. Trả về số product đã cập nhật.
+     */
+    int incrementStock(Map<String, Integer> quantities);
+
+    /**
+     * Như incrementStock nhưng chỉ áp dụng một lần cho mỗi batch: product đã ghi nhận batchId
+     * (field flash_batch) thì bỏ qua, nên chạy lại cùng một batch sau khi lỗi giữa chừng không cộng trùng.
+     */
+    int incrementStock(Map<String, Integer> quantities, String batchId);
+
+    /**
+     * Hoàn kho cho một đơn đã hủy: cộng stock và ghi orderId vào danh sách restocked_orders (giữ các đơn gần nhất)
+     * trong cùng một lệnh, product đã có orderId thì bỏ qua, nên chạy lại sau khi bulkWrite lỗi giữa chừng không cộng trùng.
+     */
+    int restockForOrder(Map<String, Integer> quantities, String orderId);
+
+    /**
+     * Cập nhật thông tin sản phẩm bằng $set các field được sửa, không ghi đè cả document.
+     * Đổi stock thì chỉ áp dụng khi sản phẩm không flash sale; trả về null nếu không cập nhật được.
+     */
+    Product updateDetails(String productId, Product details, boolean updateStock);
+
+    /**
+     * Trừ stock nếu còn đủ hàng, bằng một findAndModify có điều kiện stock >= quantity.
+     * Sản phẩm đang flash sale (stock nằm trên Redis) không bị trừ ở đây.
+     * Trả về stock mới, hoặc null nếu không đủ hàng (hoặc sản phẩm không tồn tại).
+     */
+    Integer decrementStockIfAvailable(String productId, int quantity);
+}
@@ -0,0 +1,90 @@
+package dev.anhhoang.QTCSDLHD.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import dev.anhhoang.QTCSDLHD.models.Product;
+
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    // Số đơn hoàn kho gần nhất được ghi lại trên mỗi product
+    private static final int RESTOCKED_ORDERS_KEPT = 100;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public int incrementStock(Map<String, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        quantities.forEach((productId, quantity) -> bulkOps.updateOne(
+                Query.query(Criteria.where("_id").is(productId)),
+                new Update().inc("stock", quantity)));
+        return bulkOps.execute().getModifiedCount();
+    }
+
+    @Override
+    public int incrementStock(Map<String, Integer> quantities, String batchId) {
+        if (quantities.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        quantities.forEach((productId, quantity) -> bulkOps.updateOne(
+                Query.query(Criteria.where("_id").is(productId).and("flash_batch").ne(batchId)),
+                new Update().inc("stock", quantity).set("flash_batch", batchId)));
+        return bulkOps.execute().getModifiedCount();
+    }
+
+    @Override
+    public int restockForOrder(Map<String, Integer> quantities, String orderId) {
+        if (quantities.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        quantities.forEach((productId, quantity) -> {
+            Update update = new Update().inc("stock", quantity);
+            update.push("restocked_orders").slice(-RESTOCKED_ORDERS_KEPT).each(orderId);
+            bulkOps.updateOne(Query.query(Criteria.where("_id").is(productId).and("restocked_orders").ne(orderId)),
+                    update);
+        });
+        return bulkOps.execute().getModifiedCount();
+    }
+
+    @Override
+    public Product updateDetails(String productId, Product details, boolean updateStock) {
+        Query query = Query.query(Criteria.where("_id").is(productId));
+        Update update = new Update()
+                .set("name", details.getName())
+                .set("description", details.getDescription())
+                .set("price", details.getPrice())
+                .set("image_url", details.getImage_url())
+                .set("category", details.getCategory())
+                .set("updated_at", LocalDateTime.now());
+        if (updateStock) {
+            query.addCriteria(Criteria.where("flash_sale").ne(true));
+            update.set("stock", details.getStock());
+        }
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                Product.class);
+    }
+
+    @Override
+    public Integer decrementStockIfAvailable(String productId, int quantity) {
+        Query query = Query.query(Criteria.where("_id").is(productId).and("stock").gte(quantity)
+                .and("flash_sale").ne(true));
+        query.fields().include("stock");
+        Product updated = mongoTemplate.findAndModify(query, new Update().inc("stock", -quantity),
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        return updated != null ? updated.getStock() : null;
+    }
+}
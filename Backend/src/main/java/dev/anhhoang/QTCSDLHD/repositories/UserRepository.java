@@ -3,6 +3,10 @@ package dev.anhhoang.QTCSDLHD.repositories;
 
 import dev.anhhoang.QTCSDLHD.models.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface UserRepository extends MongoRepository<User, String> {
@@ -12,4 +16,20 @@ public interface UserRepository extends MongoRepository<User, String> {
 
     // Find a user by their seller profile's shopId
     Optional<User> findBySellerProfileShopId(String shopId);
+
+    List<User> findBySellerProfileShopIdIn(Collection<String> shopIds);
+
+    // Tên shop theo shopId, lấy từ seller profile bằng một query cho tất cả các shop
+    default Map<String, String> findShopNames(Collection<String> shopIds) {
+        Map<String, String> shopNames = new HashMap<>();
+        if (shopIds.isEmpty()) {
+            return shopNames;
+        }
+        for (User seller : findBySellerProfileShopIdIn(shopIds)) {
+            if (seller.getSellerProfile() != null && seller.getSellerProfile().getShopName() != null) {
+                shopNames.put(seller.getSellerProfile().getShopId(), seller.getSellerProfile().getShopName());
+            }
+        }
+        return shopNames;
+    }
 }
\ No newline at end of file
@@ -21,7 +21,7 @@ public class CacheMonitoringService {
         
         // Đếm số lượng keys theo pattern
         Set<String> productKeys = redisTemplate.keys("product:*");
-        Set<String> cartKeys = redisTemplate.keys("cart_items:*");
+        Set<String> cartKeys = redisTemplate.keys("cart:*");
         
         stats.setProductCacheCount(productKeys != null ? productKeys.size() : 0);
         stats.setCartItemsCacheCount(cartKeys != null ? cartKeys.size() : 0);
@@ -3,327 +3,252 @@ package dev.anhhoang.QTCSDLHD.services;
 import dev.anhhoang.QTCSDLHD.dto.ProductResponse;
 import dev.anhhoang.QTCSDLHD.models.CartItem;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
+/**
+ * Cache giỏ hàng trên Redis:
+ * - cart:{customerId} là hash productId -> số lượng, không chép thông tin sản phẩm vào giỏ
+ * - product_carts:{productId} là set các customerId đang có sản phẩm trong giỏ (chỉ mục ngược)
+ * Thông tin sản phẩm lấy từ product:{id} của ProductCacheService, nên khi stock hay giá đổi
+ * chỉ cần sửa một bản ghi sản phẩm thay vì sửa từng giỏ hàng.
+ * Giỏ hàng chưa có trên Redis thì không ghi lẻ từng sản phẩm vào (sẽ che mất các sản phẩm khác
+ * trong MongoDB), lần đọc sau nạp lại cả giỏ bằng syncCacheWithDatabase.
+ */
 @Service
 public class CartCacheService {
-    
+
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
-    
+    private StringRedisTemplate stringRedisTemplate;
+
     @Autowired
     private ProductCacheService productCacheService;
-    
-    private static final String CART_ITEMS_KEY = "cart_items:";
+
+    private static final String CART_KEY = "cart:";
+    private static final String PRODUCT_CARTS_KEY = "product_carts:";
     private static final long CACHE_EXPIRATION_HOURS = 12; // Cache expire sau 12 giờ
-    
+
+    private final DefaultRedisScript<Long> putQuantityScript = new DefaultRedisScript<>();
+
+    public CartCacheService() {
+        putQuantityScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/cart_put_quantity.lua")));
+        putQuantityScript.setResultType(Long.class);
+    }
+
     /**
-     * Cache sản phẩm khi thêm vào giỏ hàng
+     * Cache sản phẩm khi thêm vào giỏ hàng (chỉ khi giỏ hàng đang có trên Redis)
      */
     public void cacheProductWhenAddToCart(String customerId, String productId, int quantity) {
-        // Cache thông tin sản phẩm
-        ProductResponse product = productCacheService.getProductFromCache(productId);
-        
-        if (product != null) {
-            // Cache item trong giỏ hàng với thông tin chi tiết
-            String cartItemKey = CART_ITEMS_KEY + customerId + ":" + productId;
-            CartItemCache cartItemCache = new CartItemCache();
-            cartItemCache.setProductId(productId);
-            cartItemCache.setQuantity(quantity);
-            cartItemCache.setProduct(product);
-            cartItemCache.setTimestamp(System.currentTimeMillis());
-            
-            redisTemplate.opsForValue().set(cartItemKey, cartItemCache, CACHE_EXPIRATION_HOURS, TimeUnit.HOURS);
-            
+        if (putQuantity(customerId, productId, "set", quantity, false) != null) {
             System.out.println("Cached product when adding to cart: " + productId + " for customer: " + customerId);
         }
     }
-    
+
     /**
      * Lấy sản phẩm từ cache giỏ hàng
      */
     public CartItemCache getCartItemFromCache(String customerId, String productId) {
-        String cartItemKey = CART_ITEMS_KEY + customerId + ":" + productId;
-        
-        try {
-            Object cached = redisTemplate.opsForValue().get(cartItemKey);
-            
-            if (cached == null) {
-                return null;
-            }
-            
-            // Nếu cached là LinkedHashMap, convert sang CartItemCache
-            if (cached instanceof java.util.LinkedHashMap) {
-                @SuppressWarnings("unchecked")
-                java.util.LinkedHashMap<String, Object> map = (java.util.LinkedHashMap<String, Object>) cached;
-                CartItemCache cartItemCache = new CartItemCache();
-                cartItemCache.setProductId((String) map.get("productId"));
-                cartItemCache.setQuantity(((Number) map.get("quantity")).intValue());
-                cartItemCache.setTimestamp(((Number) map.get("timestamp")).longValue());
-                
-                // Handle product object
-                if (map.get("product") instanceof java.util.LinkedHashMap) {
-                    @SuppressWarnings("unchecked")
-                    java.util.LinkedHashMap<String, Object> productMap = (java.util.LinkedHashMap<String, Object>) map.get("product");
-                    ProductResponse product = convertMapToProductResponse(productMap);
-                    cartItemCache.setProduct(product);
-                }
-                
-                return cartItemCache;
-            }
-            
-            return (CartItemCache) cached;
-        } catch (Exception e) {
-            System.err.println("Error retrieving cart item from cache for key: " + cartItemKey + " - " + e.getMessage());
-            // Xóa cache item bị lỗi
-            redisTemplate.delete(cartItemKey);
+        Object quantity = stringRedisTemplate.opsForHash().get(CART_KEY + customerId, productId);
+        if (quantity == null) {
             return null;
         }
+        return toCartItemCache(productId, quantity, productCacheService.getProductFromCache(productId));
     }
-    
-    /**
-     * Helper method to convert LinkedHashMap to ProductResponse
-     */
-    private ProductResponse convertMapToProductResponse(java.util.LinkedHashMap<String, Object> map) {
-        ProductResponse product = new ProductResponse();
-        product.set_id((String) map.get("_id"));
-        product.setName((String) map.get("name"));
-        product.setDescription((String) map.get("description"));
-        product.setPrice(map.get("price") != null ? ((Number) map.get("price")).doubleValue() : null);
-        product.setStock(map.get("stock") != null ? ((Number) map.get("stock")).intValue() : null);
-        product.setImage_url((String) map.get("image_url"));
-        product.setCategory((String) map.get("category"));
-        product.setShop_id((String) map.get("shop_id"));
-        product.setShop_name((String) map.get("shop_name"));
-        product.setQuantity(map.get("quantity") != null ? ((Number) map.get("quantity")).intValue() : null);
-        product.setPurchaseCount(map.get("purchaseCount") != null ? ((Number) map.get("purchaseCount")).intValue() : null);
-        product.setViewed(map.get("viewed") != null ? (Boolean) map.get("viewed") : null);
-        product.setInteractionCount(map.get("interactionCount") != null ? ((Number) map.get("interactionCount")).intValue() : 0);
-        return product;
-    }
-    
+
     /**
-     * Lấy tất cả sản phẩm trong giỏ hàng từ cache
+     * Lấy tất cả sản phẩm trong giỏ hàng từ cache: HGETALL giỏ hàng rồi đọc các sản phẩm bằng một MGET
      */
     public List<CartItemCache> getAllCartItemsFromCache(String customerId) {
-        String pattern = CART_ITEMS_KEY + customerId + ":*";
-        return redisTemplate.keys(pattern).stream()
-                .map(key -> {
-                    try {
-                        Object cached = redisTemplate.opsForValue().get(key);
-                        if (cached == null) {
-                            return null;
-                        }
-                        
-                        // Nếu cached là LinkedHashMap, convert sang CartItemCache
-                        if (cached instanceof java.util.LinkedHashMap) {
-                            @SuppressWarnings("unchecked")
-                            java.util.LinkedHashMap<String, Object> map = (java.util.LinkedHashMap<String, Object>) cached;
-                            CartItemCache cartItemCache = new CartItemCache();
-                            cartItemCache.setProductId((String) map.get("productId"));
-                            cartItemCache.setQuantity(((Number) map.get("quantity")).intValue());
-                            cartItemCache.setTimestamp(((Number) map.get("timestamp")).longValue());
-                            
-                            // Handle product object
-                            if (map.get("product") instanceof java.util.LinkedHashMap) {
-                                @SuppressWarnings("unchecked")
-                                java.util.LinkedHashMap<String, Object> productMap = (java.util.LinkedHashMap<String, Object>) map.get("product");
-                                ProductResponse product = convertMapToProductResponse(productMap);
-                                cartItemCache.setProduct(product);
-                            }
-                            
-                            return cartItemCache;
-                        }
-                        
-                        return (CartItemCache) cached;
-                    } catch (Exception e) {
-                        System.err.println("Error processing cached cart item for key: " + key + " - " + e.getMessage());
-                        // Xóa cache item bị lỗi
-                        redisTemplate.delete(key);
-                        return null;
-                    }
-                })
-                .filter(item -> item != null)
-                .collect(Collectors.toList());
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(CART_KEY + customerId);
+        if (entries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> productIds = entries.keySet().stream().map(Object::toString).toList();
+        Map<String, ProductResponse> products = productCacheService.getProductsFromCache(productIds);
+
+        List<CartItemCache> items = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            String productId = entry.getKey().toString();
+            items.add(toCartItemCache(productId, entry.getValue(), products.get(productId)));
+        }
+        return items;
     }
-    
+
     /**
      * Cập nhật số lượng sản phẩm trong cache giỏ hàng
      */
     public void updateCartItemQuantity(String customerId, String productId, int quantity) {
-        String cartItemKey = CART_ITEMS_KEY + customerId + ":" + productId;
-        Object cached = redisTemplate.opsForValue().get(cartItemKey);
-        
-        if (cached != null) {
-            CartItemCache cartItemCache;
-            
-            // Nếu cached là LinkedHashMap, convert sang CartItemCache
-            if (cached instanceof java.util.LinkedHashMap) {
-                @SuppressWarnings("unchecked")
-                java.util.LinkedHashMap<String, Object> map = (java.util.LinkedHashMap<String, Object>) cached;
-                cartItemCache = new CartItemCache();
-                cartItemCache.setProductId((String) map.get("productId"));
-                cartItemCache.setQuantity(quantity); // Set new quantity
-                cartItemCache.setTimestamp(System.currentTimeMillis()); // Update timestamp
-                
-                // Handle product object
-                if (map.get("product") instanceof java.util.LinkedHashMap) {
-                    @SuppressWarnings("unchecked")
-                    java.util.LinkedHashMap<String, Object> productMap = (java.util.LinkedHashMap<String, Object>) map.get("product");
-                    ProductResponse product = convertMapToProductResponse(productMap);
-                    cartItemCache.setProduct(product);
-                }
-            } else {
-                cartItemCache = (CartItemCache) cached;
-                cartItemCache.setQuantity(quantity);
-                cartItemCache.setTimestamp(System.currentTimeMillis());
-            }
-            
-            redisTemplate.opsForValue().set(cartItemKey, cartItemCache, CACHE_EXPIRATION_HOURS, TimeUnit.HOURS);
-            
+        String cartKey = CART_KEY + customerId;
+        if (Boolean.TRUE.equals(stringRedisTemplate.opsForHash().hasKey(cartKey, productId))) {
+            putQuantity(customerId, productId, "set", quantity, false);
             System.out.println("Updated cart item quantity in cache: " + productId + " = " + quantity);
         }
     }
-    
+
     /**
      * Xóa sản phẩm khỏi cache giỏ hàng
      */
     public void removeCartItemFromCache(String customerId, String productId) {
-        String cartItemKey = CART_ITEMS_KEY + customerId + ":" + productId;
-        redisTemplate.delete(cartItemKey);
-        
+        removeItems(customerId, List.of(productId));
         System.out.println("Removed cart item from cache: " + productId + " for customer: " + customerId);
     }
-    
+
     /**
      * Xóa toàn bộ cache giỏ hàng của khách hàng
      */
     public void clearCartCache(String customerId) {
-        String pattern = CART_ITEMS_KEY + customerId + ":*";
-        redisTemplate.delete(redisTemplate.keys(pattern));
-        
+        String cartKey = CART_KEY + customerId;
+        Set<Object> productIds = stringRedisTemplate.opsForHash().keys(cartKey);
+        stringRedisTemplate.delete(cartKey);
+        for (Object productId : productIds) {
+            stringRedisTemplate.opsForSet().remove(PRODUCT_CARTS_KEY + productId, customerId);
+        }
+
         System.out.println("Cleared cart cache for customer: " + customerId);
     }
-    
+
     /**
      * Kiểm tra xem sản phẩm có trong cache giỏ hàng không
      */
     public boolean isProductInCartCache(String customerId, String productId) {
-        String cartItemKey = CART_ITEMS_KEY + customerId + ":" + productId;
-        return redisTemplate.hasKey(cartItemKey);
+        return stringRedisTemplate.opsForHash().hasKey(CART_KEY + customerId, productId);
     }
-    
+
     /**
-     * Đồng bộ cache với database (có thể gọi định kỳ)
+     * Đồng bộ cache với database (có thể gọi định kỳ).
+     * Xóa cache cũ và ghi lại giỏ hàng cùng chỉ mục ngược trong một pipeline (một round trip).
      */
     public void syncCacheWithDatabase(String customerId, List<CartItem> cartItems) {
-        // Xóa cache cũ
-        clearCartCache(customerId);
-        
-        // Cache lại các items mới
+        String cartKey = CART_KEY + customerId;
+        Map<String, String> values = new LinkedHashMap<>();
         for (CartItem item : cartItems) {
-            cacheProductWhenAddToCart(customerId, item.getProduct_id(), item.getQuantity());
+            values.put(item.getProduct_id(), String.valueOf(item.getQuantity()));
         }
+        long ttlSeconds = TimeUnit.HOURS.toSeconds(CACHE_EXPIRATION_HOURS);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            // customerId thừa trong product_carts của sản phẩm cũ vô hại, không cần đọc giỏ cũ để dọn
+            redis.del(cartKey);
+            if (!values.isEmpty()) {
+                redis.hMSet(cartKey, values);
+                redis.expire(cartKey, ttlSeconds);
+                for (String productId : values.keySet()) {
+                    redis.sAdd(PRODUCT_CARTS_KEY + productId, customerId);
+                    redis.expire(PRODUCT_CARTS_KEY + productId, ttlSeconds);
+                }
+            }
+            return null;
+        });
     }
-    
+
     /**
      * Xóa cache cho các sản phẩm đã thanh toán
      */
     public void removeOrderedItemsFromCache(String customerId, List<String> productIds) {
-        for (String productId : productIds) {
-            String cartItemKey = CART_ITEMS_KEY + customerId + ":" + productId;
-            redisTemplate.delete(cartItemKey);
-            System.out.println("Removed ordered item from cache: " + productId + " for customer: " + customerId);
-        }
+        removeItems(customerId, productIds);
+        System.out.println("Removed ordered items from cache: " + productIds + " for customer: " + customerId);
     }
-    
+
     /**
-     * Cập nhật số lượng tồn kho của sản phẩm trong cache giỏ hàng
-     * Được gọi sau khi stock sản phẩm thay đổi (sau khi mua hàng)
+     * Giỏ hàng của khách hàng đang có trong cache hay không
      */
-    public void updateProductStockInCache(String productId, int newStock) {
-        try {
-            // Lấy tất cả keys có pattern cart_items:*:{productId}
-            String pattern = CART_ITEMS_KEY + "*:" + productId;
-            var keys = redisTemplate.keys(pattern);
-            
-            if (keys != null && !keys.isEmpty()) {
-                for (String key : keys) {
-                    Object cached = redisTemplate.opsForValue().get(key);
-                    if (cached != null) {
-                        CartItemCache cartItemCache = null;
-                        
-                        // Xử lý trường hợp cached là LinkedHashMap
-                        if (cached instanceof java.util.LinkedHashMap) {
-                            @SuppressWarnings("unchecked")
-                            java.util.LinkedHashMap<String, Object> map = (java.util.LinkedHashMap<String, Object>) cached;
-                            cartItemCache = convertMapToCartItemCache(map);
-                        } else if (cached instanceof CartItemCache) {
-                            cartItemCache = (CartItemCache) cached;
-                        }
-                        
-                        if (cartItemCache != null && cartItemCache.getProduct() != null) {
-                            // Cập nhật stock mới
-                            cartItemCache.getProduct().setStock(newStock);
-                            cartItemCache.setTimestamp(System.currentTimeMillis());
-                            
-                            // Lưu lại vào cache
-                            redisTemplate.opsForValue().set(key, cartItemCache, CACHE_EXPIRATION_HOURS, TimeUnit.HOURS);
-                            System.out.println("Updated stock for product " + productId + " in cache: " + newStock);
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("Error updating product stock in cache: " + e.getMessage());
-        }
+    public boolean hasCart(String customerId) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(CART_KEY + customerId));
     }
-    
+
     /**
-     * Convert LinkedHashMap to CartItemCache
+     * Số lượng từng sản phẩm trong giỏ hàng cache (productId -> quantity)
      */
-    private CartItemCache convertMapToCartItemCache(java.util.LinkedHashMap<String, Object> map) {
-        CartItemCache cartItemCache = new CartItemCache();
-        cartItemCache.setProductId((String) map.get("productId"));
-        cartItemCache.setQuantity(((Number) map.get("quantity")).intValue());
-        cartItemCache.setTimestamp(((Number) map.get("timestamp")).longValue());
-        
-        // Convert product object
-        if (map.get("product") instanceof java.util.LinkedHashMap) {
-            @SuppressWarnings("unchecked")
-            java.util.LinkedHashMap<String, Object> productMap = (java.util.LinkedHashMap<String, Object>) map.get("product");
-            ProductResponse product = convertMapToProductResponse(productMap);
-            cartItemCache.setProduct(product);
+    public Map<String, Integer> getQuantities(String customerId) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        stringRedisTemplate.opsForHash().entries(CART_KEY + customerId)
+                .forEach((productId, quantity) -> quantities.put(productId.toString(),
+                        Integer.parseInt(quantity.toString())));
+        return quantities;
+    }
+
+    /**
+     * Cộng thêm số lượng bằng HINCRBY (không đọc trước), trả về số lượng mới.
+     * Giỏ hàng không có trên Redis thì chỉ tạo mới khi createCart (khách chưa có giỏ trong MongoDB),
+     * ngược lại không ghi gì và trả về null
+     */
+    public Integer addQuantity(String customerId, String productId, int delta, boolean createCart) {
+        Long quantity = putQuantity(customerId, productId, "incr", delta, createCart);
+        return quantity != null ? quantity.intValue() : null;
+    }
+
+    /**
+     * Các khách hàng đang có sản phẩm trong giỏ hàng cache (theo chỉ mục ngược)
+     */
+    public Set<String> getCustomersWithProductInCart(String productId) {
+        return stringRedisTemplate.opsForSet().members(PRODUCT_CARTS_KEY + productId);
+    }
+
+    /**
+     * Sản phẩm bị xóa: bỏ cache các giỏ hàng đang chứa nó để lần đọc sau nạp lại từ database
+     */
+    public void evictCartsContainingProduct(String productId) {
+        Set<String> customerIds = getCustomersWithProductInCart(productId);
+        if (customerIds != null) {
+            customerIds.forEach(this::clearCartCache);
+        }
+        stringRedisTemplate.delete(PRODUCT_CARTS_KEY + productId);
+    }
+
+    // Giỏ hàng hết hạn trước chỉ mục thì chỉ còn customerId thừa trong set, vô hại
+    private Long putQuantity(String customerId, String productId, String mode, int quantity, boolean createCart) {
+        return stringRedisTemplate.execute(putQuantityScript,
+                List.of(CART_KEY + customerId, PRODUCT_CARTS_KEY + productId),
+                customerId, productId, mode, String.valueOf(quantity), createCart ? "1" : "0",
+                String.valueOf(TimeUnit.HOURS.toSeconds(CACHE_EXPIRATION_HOURS)));
+    }
+
+    private void removeItems(String customerId, List<String> productIds) {
+        if (productIds.isEmpty()) {
+            return;
         }
-        
+        stringRedisTemplate.opsForHash().delete(CART_KEY + customerId, productIds.toArray());
+        for (String productId : productIds) {
+            stringRedisTemplate.opsForSet().remove(PRODUCT_CARTS_KEY + productId, customerId);
+        }
+    }
+
+    private static CartItemCache toCartItemCache(String productId, Object quantity, ProductResponse product) {
+        CartItemCache cartItemCache = new CartItemCache();
+        cartItemCache.setProductId(productId);
+        cartItemCache.setQuantity(Integer.parseInt(quantity.toString()));
+        cartItemCache.setProduct(product);
         return cartItemCache;
     }
 
     /**
-     * Inner class để lưu thông tin cache của cart item
+     * Inner class để trả về một dòng giỏ hàng đã ghép với thông tin sản phẩm
      */
     public static class CartItemCache {
         private String productId;
         private int quantity;
         private ProductResponse product;
-        private long timestamp;
-        
+
         // Getters and setters
         public String getProductId() { return productId; }
         public void setProductId(String productId) { this.productId = productId; }
-        
+
         public int getQuantity() { return quantity; }
         public void setQuantity(int quantity) { this.quantity = quantity; }
-        
+
         public ProductResponse getProduct() { return product; }
         public void setProduct(ProductResponse product) { this.product = product; }
-        
-        public long getTimestamp() { return timestamp; }
-        public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
     }
 }
@@ -0,0 +1,181 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import dev.anhhoang.QTCSDLHD.dto.CartItemRequest;
+import dev.anhhoang.QTCSDLHD.models.Money;
+import dev.anhhoang.QTCSDLHD.models.OrderItem;
+import dev.anhhoang.QTCSDLHD.models.Product;
+import dev.anhhoang.QTCSDLHD.models.Voucher;
+import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+import dev.anhhoang.QTCSDLHD.repositories.UserRepository;
+
+/**
+ * Tính giá cho cả giỏ hàng: đọc toàn bộ sản phẩm và voucher bằng hai query,
+ * tính giá từng dòng và tổng đơn trong một lượt.
+ * Dùng chung cho báo giá (/orders/quote) và tạo đơn, nên hai bên luôn khớp nhau.
+ */
+@Service
+public class CartPricingService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private VoucherService voucherService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    /**
+     * Một dòng đã tính giá; item.price là đơn giá sau khi áp voucher
+     */
+    public static class PricedLine {
+        private final Product product;
+        private final OrderItem item;
+        private final Money discount;
+        private final Money lineTotal;
+
+        PricedLine(Product product, OrderItem item, Money discount, Money lineTotal) {
+            this.product = product;
+            this.item = item;
+            this.discount = discount;
+            this.lineTotal = lineTotal;
+        }
+
+        public Product getProduct() { return product; }
+        public OrderItem getItem() { return item; }
+        public Money getDiscount() { return discount; }
+        public Money getLineTotal() { return lineTotal; }
+
+        public boolean isInStock() {
+            return product.getStock() != null && product.getStock() >= item.getQuantity();
+        }
+    }
+
+    public static class PricedCart {
+        private final List<PricedLine> lines;
+        private final Money subtotal;
+        private final Money discount;
+        private final Money total;
+
+        PricedCart(List<PricedLine> lines, Money subtotal, Money discount, Money total) {
+            this.lines = lines;
+            this.subtotal = subtotal;
+            this.discount = discount;
+            this.total = total;
+        }
+
+        public List<PricedLine> getLines() { return lines; }
+        public Money getSubtotal() { return subtotal; }
+        public Money getDiscount() { return discount; }
+        public Money getTotal() { return total; }
+
+        public List<OrderItem> getItems() {
+            return lines.stream().map(PricedLine::getItem).collect(Collectors.toList());
+        }
+
+        // Tổng tiền theo từng shop, theo thứ tự shop xuất hiện trong giỏ
+        public Map<String, Money> getTotalByShop() {
+            Map<String, Money> totals = new LinkedHashMap<>();
+            for (PricedLine line : lines) {
+                totals.merge(line.getItem().getShop_id(), line.getLineTotal(), Money::plus);
+            }
+            return totals;
+        }
+    }
+
+    public PricedCart price(List<CartItemRequest> items) {
+        if (items == null || items.isEmpty()) {
+            throw new RuntimeException("Order items list is empty. Cannot create order.");
+        }
+
+        Map<String, Product> products = productRepository.findAllById(items.stream()
+                .map(CartItemRequest::getProductId)
+                .distinct()
+                .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Product::get_id, product -> product));
+        // Sản phẩm đang flash sale: Product.stock được ghi trễ, lấy stock hiện tại từ Redis
+        flashSaleService.applyLiveStock(products.values());
+        Map<String, Voucher> vouchers = voucherService.getVouchersByIds(items.stream()
+                .map(CartItemRequest::getVoucherId)
+                .filter(StringUtils::hasText)
+                .collect(Collectors.toSet()));
+
+        List<PricedLine> lines = new ArrayList<>();
+        Money subtotal = Money.ZERO;
+        Money totalDiscount = Money.ZERO;
+        Money total = Money.ZERO;
+        for (CartItemRequest request : items) {
+            Product product = products.get(request.getProductId());
+            if (product == null) {
+                throw new RuntimeException("Product not found: " + request.getProductId());
+            }
+            if (request.getQuantity() == null || request.getQuantity() <= 0) {
+                throw new RuntimeException("Invalid quantity for product: " + product.getName());
+            }
+
+            OrderItem item = new OrderItem();
+            item.setProduct_id(product.get_id());
+            item.setQuantity(request.getQuantity());
+            item.setShop_id(product.getShopid());
+            item.setProduct_name(product.getName());
+            item.setImage_url(product.getImage_url());
+            item.setShop_name(product.getShopname());
+
+            int quantity = request.getQuantity();
+            Money unitPrice = product.getPrice() != null ? product.getPrice() : Money.ZERO;
+            Money gross = unitPrice.times(quantity);
+            Voucher voucher = StringUtils.hasText(request.getVoucherId()) ? vouchers.get(request.getVoucherId()) : null;
+            if (voucher != null && voucherService.isVoucherValid(voucher, gross)) {
+                // Đơn giá sau giảm, làm tròn tới đồng
+                unitPrice = gross.minus(voucherService.calculateDiscount(voucher, gross)).dividedBy(quantity);
+                item.setVoucherId(voucher.getId());
+            }
+            item.setPrice(unitPrice);
+
+            Money lineTotal = unitPrice.times(quantity);
+            Money discount = gross.minus(lineTotal);
+            lines.add(new PricedLine(product, item, discount, lineTotal));
+            subtotal = subtotal.plus(gross);
+            totalDiscount = totalDiscount.plus(discount);
+            total = total.plus(lineTotal);
+        }
+
+        fillMissingShopNames(lines);
+        return new PricedCart(lines, subtotal, totalDiscount, total);
+    }
+
+    // Sản phẩm chưa lưu shopname thì lấy tên shop từ seller profile, một query cho tất cả các shop
+    private void fillMissingShopNames(List<PricedLine> lines) {
+        Set<String> shopIds = lines.stream()
+                .map(PricedLine::getItem)
+                .filter(item -> !StringUtils.hasText(item.getShop_name()))
+                .map(OrderItem::getShop_id)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (shopIds.isEmpty()) {
+            return;
+        }
+        Map<String, String> shopNames = userRepository.findShopNames(shopIds);
+        for (PricedLine line : lines) {
+            if (!StringUtils.hasText(line.getItem().getShop_name())) {
+                line.getItem().setShop_name(shopNames.get(line.getItem().getShop_id()));
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import dev.anhhoang.QTCSDLHD.models.Cart;
+import dev.anhhoang.QTCSDLHD.models.CartItem;
+import dev.anhhoang.QTCSDLHD.repositories.CartRepository;
+
+/**
+ * Chế độ write-behind cho giỏ hàng (carts.write-behind.enabled=true): giỏ hàng trên Redis
+ * (cart:{customerId}) là bản chính, mỗi thay đổi chỉ ghi Redis và thêm một bản ghi vào stream
+ * cart:changes. CartWriteBehindFlushJob đọc stream theo consumer group, gộp các thay đổi của
+ * cùng một khách hàng và ghi giỏ hàng xuống collection carts một lần cho mỗi khách hàng.
+ * Bản ghi chỉ được ack sau khi ghi MongoDB xong, nên nếu tiến trình chết giữa chừng
+ * thì lần chạy sau đọc lại các bản ghi đang treo (pending) và ghi lại.
+ */
+@Service
+public class CartWriteBehindService {
+
+    private static final String STREAM_KEY = "cart:changes";
+    private static final String GROUP = "cart-flusher";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CartCacheService cartCacheService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Value("${carts.write-behind.enabled:false}")
+    private boolean enabled;
+
+    // Tên consumer trong group; các node dùng chung tên thì vẫn an toàn vì ghi lại là idempotent
+    @Value("${carts.write-behind.consumer:cart-flusher-1}")
+    private String consumerName;
+
+    @Value("${carts.write-behind.batch-size:500}")
+    private int batchSize;
+
+    private volatile boolean groupReady;
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong flushedRecords = new AtomicLong();
+    private final AtomicLong flushedCarts = new AtomicLong();
+    private final AtomicLong failedCarts = new AtomicLong();
+    private volatile LocalDateTime lastFlushAt;
+    private volatile String lastError;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Thêm sản phẩm vào giỏ hàng trên Redis, trả về số lượng mới
+     */
+    public int addToCart(String customerId, String productId, int quantity) {
+        while (true) {
+            boolean cached = ensureLoaded(customerId);
+            Integer newQuantity = cartCacheService.addQuantity(customerId, productId, quantity, !cached);
+            if (newQuantity != null) {
+                recordChange(customerId, productId, newQuantity);
+                return newQuantity;
+            }
+            // Giỏ hàng vừa hết hạn trên Redis sau khi nạp: nạp lại rồi ghi lại
+        }
+    }
+
+    /**
+     * Đặt số lượng (<= 0 là xóa); trả về false nếu sản phẩm không có trong giỏ
+     */
+    public boolean updateQuantity(String customerId, String productId, int quantity) {
+        ensureLoaded(customerId);
+        if (!cartCacheService.isProductInCartCache(customerId, productId)) {
+            return false;
+        }
+        if (quantity <= 0) {
+            cartCacheService.removeCartItemFromCache(customerId, productId);
+        } else {
+            cartCacheService.updateCartItemQuantity(customerId, productId, quantity);
+        }
+        recordChange(customerId, productId, Math.max(quantity, 0));
+        return true;
+    }
+
+    /**
+     * Xóa sản phẩm khỏi giỏ hàng; trả về false nếu sản phẩm không có trong giỏ
+     */
+    public boolean removeFromCart(String customerId, String productId) {
+        return updateQuantity(customerId, productId, 0);
+    }
+
+    /**
+     * Xóa các sản phẩm đã đặt hàng và ghi ngay giỏ hàng xuống MongoDB (checkout)
+     */
+    public void removeOrderedItems(String customerId, List<String> productIds) {
+        ensureLoaded(customerId);
+        cartCacheService.removeOrderedItemsFromCache(customerId, productIds);
+        Map<String, Integer> removed = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            recordChange(customerId, productId, 0);
+            removed.put(productId, 0);
+        }
+        persist(customerId, removed);
+    }
+
+    /**
+     * Đọc stream và ghi các giỏ hàng đã thay đổi xuống MongoDB, trả về số bản ghi đã ghi xong.
+     * Đọc lại các bản ghi pending (đã nhận nhưng chưa ack) trước, sau đó tới các bản ghi mới.
+     */
+    public int flushPending() {
+        ensureGroup();
+        int flushed = 0;
+        // Đọc hết danh sách pending theo từng batch; bản ghi ghi lỗi vẫn pending nên đọc tiếp sau id cuối
+        String pendingAfter = "0";
+        while (true) {
+            List<MapRecord<String, Object, Object>> records = read(ReadOffset.from(pendingAfter));
+            flushed += flush(records);
+            if (records.size() < batchSize) {
+                break;
+            }
+            pendingAfter = records.get(records.size() - 1).getId().getValue();
+        }
+        while (true) {
+            List<MapRecord<String, Object, Object>> records = read(ReadOffset.lastConsumed());
+            flushed += flush(records);
+            if (records.size() < batchSize) {
+                return flushed;
+            }
+        }
+    }
+
+    private int flush(List<MapRecord<String, Object, Object>> records) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+
+        // Gộp theo khách hàng: productId -> số lượng cuối cùng được ghi nhận
+        Map<String, Map<String, Integer>> changesByCustomer = new LinkedHashMap<>();
+        Map<String, List<RecordId>> recordIdsByCustomer = new LinkedHashMap<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> value = record.getValue();
+            String customerId = String.valueOf(value.get("customerId"));
+            changesByCustomer.computeIfAbsent(customerId, id -> new LinkedHashMap<>())
+                    .put(String.valueOf(value.get("productId")), Integer.parseInt(String.valueOf(value.get("quantity"))));
+            recordIdsByCustomer.computeIfAbsent(customerId, id -> new ArrayList<>()).add(record.getId());
+        }
+
+        List<RecordId> done = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Integer>> entry : changesByCustomer.entrySet()) {
+            try {
+                persist(entry.getKey(), entry.getValue());
+                done.addAll(recordIdsByCustomer.get(entry.getKey()));
+                flushedCarts.incrementAndGet();
+            } catch (RuntimeException e) {
+                // Không ack, bản ghi còn pending và được ghi lại ở lần sau
+                failedCarts.incrementAndGet();
+                lastError = e.getMessage();
+                System.err.println("Error flushing cart for customer " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        if (!done.isEmpty()) {
+            RecordId[] ids = done.toArray(new RecordId[0]);
+            stringRedisTemplate.opsForStream().acknowledge(STREAM_KEY, GROUP, ids);
+            stringRedisTemplate.opsForStream().delete(STREAM_KEY, ids);
+            flushedRecords.addAndGet(ids.length);
+            lastFlushAt = LocalDateTime.now();
+        }
+        return done.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("streamLength", enabled ? stringRedisTemplate.opsForStream().size(STREAM_KEY) : 0L);
+        stats.put("changes", changes.get());
+        stats.put("flushedRecords", flushedRecords.get());
+        stats.put("flushedCarts", flushedCarts.get());
+        stats.put("failedCarts", failedCarts.get());
+        stats.put("lastFlushAt", lastFlushAt);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    // Giỏ hàng chưa có trên Redis thì nạp từ MongoDB trước, để lần ghi xuống sau không làm mất sản phẩm cũ.
+    // Trả về false nếu giỏ hàng rỗng (không có gì trên Redis, được tạo giỏ mới)
+    private boolean ensureLoaded(String customerId) {
+        if (cartCacheService.hasCart(customerId)) {
+            return true;
+        }
+        Optional<Cart> cart = cartRepository.findByCustomerId(customerId);
+        if (cart.isEmpty() || cart.get().getItems() == null || cart.get().getItems().isEmpty()) {
+            return false;
+        }
+        cartCacheService.syncCacheWithDatabase(customerId, cart.get().getItems());
+        return true;
+    }
+
+    private void recordChange(String customerId, String productId, int quantity) {
+        Map<String, String> value = new LinkedHashMap<>();
+        value.put("customerId", customerId);
+        value.put("productId", productId);
+        value.put("quantity", String.valueOf(quantity));
+        stringRedisTemplate.opsForStream().add(STREAM_KEY, value);
+        changes.incrementAndGet();
+    }
+
+    /**
+     * Ghi giỏ hàng xuống MongoDB: lấy toàn bộ giỏ hàng hiện tại trên Redis (bản mới nhất).
+     * Giỏ hàng không còn trên Redis (rỗng hoặc hết hạn) thì chỉ áp các thay đổi đã ghi nhận.
+     */
+    private void persist(String customerId, Map<String, Integer> recordedChanges) {
+        Map<String, Integer> current = cartCacheService.getQuantities(customerId);
+        Cart cart = cartRepository.findByCustomerId(customerId).orElseGet(() -> {
+            Cart newCart = new Cart();
+            newCart.setCustomerId(customerId);
+            newCart.setCreated_at(LocalDateTime.now());
+            newCart.setItems(new ArrayList<>());
+            return newCart;
+        });
+
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        if (!current.isEmpty()) {
+            quantities.putAll(current);
+        } else {
+            cart.getItems().forEach(item -> quantities.put(item.getProduct_id(), item.getQuantity()));
+            recordedChanges.forEach((productId, quantity) -> {
+                if (quantity > 0) {
+                    quantities.put(productId, quantity);
+                } else {
+                    quantities.remove(productId);
+                }
+            });
+        }
+
+        List<CartItem> items = new ArrayList<>();
+        quantities.forEach((productId, quantity) -> {
+            CartItem item = new CartItem();
+            item.setProduct_id(productId);
+            item.setQuantity(quantity);
+            items.add(item);
+        });
+        cart.setItems(items);
+        cart.setStatus("active");
+        cart.setUpdated_at(LocalDateTime.now());
+        cartRepository.save(cart);
+    }
+
+    // read(Consumer, StreamReadOptions, StreamOffset...) là varargs generic; chỉ truyền một StreamOffset
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> read(ReadOffset offset) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                Consumer.from(GROUP, consumerName),
+                StreamReadOptions.empty().count(batchSize),
+                StreamOffset.create(STREAM_KEY, offset));
+        return records != null ? records : List.of();
+    }
+
+    // Tạo consumer group (và stream nếu chưa có), bỏ qua lỗi BUSYGROUP khi group đã tồn tại
+    private void ensureGroup() {
+        if (groupReady) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(STREAM_KEY.getBytes(StandardCharsets.UTF_8), GROUP, ReadOffset.from("0"), true));
+        } catch (RuntimeException e) {
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (message == null || !message.contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+        groupReady = true;
+    }
+}
@@ -2,20 +2,33 @@ package dev.anhhoang.QTCSDLHD.services;
 
 import dev.anhhoang.QTCSDLHD.dto.AddToCartRequest;
 import dev.anhhoang.QTCSDLHD.dto.RemoveFromCartRequest;
+import dev.anhhoang.QTCSDLHD.dto.CartItemRequest;
 import dev.anhhoang.QTCSDLHD.dto.CreateOrderRequest;
+import dev.anhhoang.QTCSDLHD.dto.OrderQuoteResponse;
 import dev.anhhoang.QTCSDLHD.dto.ProductResponse;
-import dev.anhhoang.QTCSDLHD.dto.UserProfileResponse;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface CustomerService {
-    UserProfileResponse addProductToCart(String customerId, AddToCartRequest request);
+    void addProductToCart(String customerId, AddToCartRequest request);
 
-    UserProfileResponse removeProductFromCart(String customerId, RemoveFromCartRequest request);
+    void removeProductFromCart(String customerId, RemoveFromCartRequest request);
 
-    UserProfileResponse updateCartItemQuantity(String customerId, String productId, Integer quantity);
+    void updateCartItemQuantity(String customerId, String productId, Integer quantity);
 
     List<ProductResponse> getCartProducts(String customerId);
 
     String createOrderFromCart(String customerId, CreateOrderRequest request);
+
+    // Tạo đơn theo Idempotency-Key: gửi lại cùng key trả về checkout id đã tạo
+    String createOrderFromCart(String customerId, CreateOrderRequest request, String idempotencyKey);
+
+    // Báo giá giỏ hàng, không tạo đơn
+    OrderQuoteResponse quoteOrder(List<CartItemRequest> items);
+
+    // Giữ hàng khi vào trang thanh toán, trả về thời điểm hết hạn
+    LocalDateTime reserveCheckout(String customerId, List<CartItemRequest> items);
+
+    void releaseCheckout(String customerId);
 }
\ No newline at end of file
@@ -6,28 +6,24 @@ import dev.anhhoang.QTCSDLHD.repositories.OrderRepository;
 import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
 import dev.anhhoang.QTCSDLHD.repositories.UserRepository;
 import dev.anhhoang.QTCSDLHD.repositories.CartRepository;
-import dev.anhhoang.QTCSDLHD.neo4j.services.RecommendationService;
+import org.bson.types.ObjectId;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 public class CustomerServiceImpl implements CustomerService {
 
-    // Cache để theo dõi các order request gần đây
-    private final ConcurrentHashMap<String, Long> recentOrderRequests = new ConcurrentHashMap<>();
-    private static final long ORDER_REQUEST_COOLDOWN_MS = 5000; // 5 giây
-
     @Autowired
     private UserRepository userRepository;
 
@@ -41,104 +37,92 @@ public class CustomerServiceImpl implements CustomerService {
     private CartRepository cartRepository;
 
     @Autowired
-    private VoucherService voucherService;
+    private OutboxService outboxService;
 
     @Autowired
-    private RecommendationService recommendationService;
+    private CartCacheService cartCacheService;
 
     @Autowired
-    private CartCacheService cartCacheService;
+    private CartWriteBehindService cartWriteBehindService;
 
     @Autowired
     private ProductCacheService productCacheService;
 
-    @Override
-    public UserProfileResponse addProductToCart(String customerId, AddToCartRequest request) {
-        User user = userRepository.findById(customerId)
-                .orElseThrow(() -> new RuntimeException("Customer not found"));
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new RuntimeException("Product not found"));
+    @Autowired
+    private SellerStatsService sellerStatsService;
 
-        Cart cart = cartRepository.findByCustomerId(customerId)
-                .orElseGet(() -> {
-                    Cart newCart = new Cart();
-                    newCart.setCustomerId(customerId);
-                    newCart.setStatus("active");
-                    newCart.setCreated_at(LocalDateTime.now());
-                    newCart.setUpdated_at(LocalDateTime.now());
-                    newCart.setItems(new ArrayList<>());
-                    return cartRepository.save(newCart);
-                });
-
-        Optional<CartItem> existingCartItem = cart.getItems().stream()
-                .filter(item -> item.getProduct_id().equals(request.getProductId()))
-                .findFirst();
-
-        int newQuantity;
-        if (existingCartItem.isPresent()) {
-            newQuantity = existingCartItem.get().getQuantity() + request.getQuantity();
-            existingCartItem.get().setQuantity(newQuantity);
-        } else {
-            CartItem newCartItem = new CartItem();
-            newCartItem.setProduct_id(product.get_id());
-            newCartItem.setQuantity(request.getQuantity());
-            cart.getItems().add(newCartItem);
-            newQuantity = request.getQuantity();
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private CartPricingService cartPricingService;
+
+    @Autowired
+    private InventoryReservationService reservationService;
+
+    @Autowired
+    private OrderBatchWriter orderBatchWriter;
+
+    @Autowired
+    private PostCheckoutPipeline postCheckoutPipeline;
+
+    @Autowired
+    private OrderIdempotencyService orderIdempotencyService;
+
+    @Override
+    public void addProductToCart(String customerId, AddToCartRequest request) {
+        if (productCacheService.getProductFromCache(request.getProductId()) == null) {
+            throw new RuntimeException("Product not found");
         }
-        
-        cart.setStatus("active");
-        cart.setUpdated_at(LocalDateTime.now());
-        cartRepository.save(cart);
+        if (cartWriteBehindService.isEnabled()) {
+            // Write-behind: chỉ ghi giỏ hàng trên Redis, CartWriteBehindFlushJob ghi xuống MongoDB sau
+            cartWriteBehindService.addToCart(customerId, request.getProductId(), request.getQuantity());
+            return;
+        }
+        // Một lệnh $inc/$push trên MongoDB, không đọc giỏ hàng trước
+        int newQuantity = cartRepository.addItem(customerId, request.getProductId(), request.getQuantity());
         
         // Cache sản phẩm khi thêm vào giỏ hàng
         cartCacheService.cacheProductWhenAddToCart(customerId, request.getProductId(), newQuantity);
-        
-        return convertToUserProfileResponse(user);
     }
 
     @Override
-    public UserProfileResponse removeProductFromCart(String customerId, RemoveFromCartRequest request) {
-        User user = userRepository.findById(customerId)
-                .orElseThrow(() -> new RuntimeException("Customer not found"));
-        Cart cart = cartRepository.findByCustomerId(customerId)
-                .orElseThrow(() -> new RuntimeException("No cart found"));
-        boolean removed = cart.getItems().removeIf(item -> item.getProduct_id().equals(request.getProductId()));
-        if (!removed) {
+    public void removeProductFromCart(String customerId, RemoveFromCartRequest request) {
+        if (cartWriteBehindService.isEnabled()) {
+            if (!cartWriteBehindService.removeFromCart(customerId, request.getProductId())) {
+                throw new RuntimeException("Product not found in cart");
+            }
+            return;
+        }
+        if (!cartRepository.removeItem(customerId, request.getProductId())) {
             throw new RuntimeException("Product not found in cart");
         }
-        cart.setStatus("active");
-        cart.setUpdated_at(LocalDateTime.now());
-        cartRepository.save(cart);
         
         // Xóa sản phẩm khỏi cache giỏ hàng
         cartCacheService.removeCartItemFromCache(customerId, request.getProductId());
-        
-        return convertToUserProfileResponse(user);
     }
 
     @Override
-    public UserProfileResponse updateCartItemQuantity(String customerId, String productId, Integer quantity) {
-        User user = userRepository.findById(customerId)
-                .orElseThrow(() -> new RuntimeException("Customer not found"));
-        Cart cart = cartRepository.findByCustomerId(customerId)
-                .orElseThrow(() -> new RuntimeException("No cart found"));
-        CartItem cartItem = cart.getItems().stream()
-                .filter(item -> item.getProduct_id().equals(productId))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Product not found in cart"));
+    public void updateCartItemQuantity(String customerId, String productId, Integer quantity) {
+        if (cartWriteBehindService.isEnabled()) {
+            if (!cartWriteBehindService.updateQuantity(customerId, productId, quantity)) {
+                throw new RuntimeException("Product not found in cart");
+            }
+            return;
+        }
+        boolean updated = quantity <= 0
+                ? cartRepository.removeItem(customerId, productId)
+                : cartRepository.setItemQuantity(customerId, productId, quantity);
+        if (!updated) {
+            throw new RuntimeException("Product not found in cart");
+        }
         if (quantity <= 0) {
-            cart.getItems().remove(cartItem);
             // Xóa khỏi cache nếu quantity <= 0
             cartCacheService.removeCartItemFromCache(customerId, productId);
         } else {
-            cartItem.setQuantity(quantity);
             // Cập nhật cache với quantity mới
             cartCacheService.updateCartItemQuantity(customerId, productId, quantity);
         }
-        cart.setStatus("active");
-        cart.setUpdated_at(LocalDateTime.now());
-        cartRepository.save(cart);
-        return convertToUserProfileResponse(user);
     }
 
     @Override
@@ -151,6 +135,9 @@ public class CustomerServiceImpl implements CustomerService {
             return cachedItems.stream()
                     .map(cachedItem -> {
                         ProductResponse productResponse = cachedItem.getProduct();
+                        if (productResponse == null) {
+                            return unavailableProduct(cachedItem.getProductId(), cachedItem.getQuantity());
+                        }
                         productResponse.setQuantity(cachedItem.getQuantity());
                         return productResponse;
                     })
@@ -163,46 +150,111 @@ public class CustomerServiceImpl implements CustomerService {
         if (cart == null || cart.getItems().isEmpty())
             return new ArrayList<>();
             
+        // Đọc tất cả sản phẩm bằng một findAllById và tên shop còn thiếu bằng một query $in,
+        // số round trip không tăng theo số sản phẩm trong giỏ
+        Map<String, Product> productsById = productRepository.findAllById(cart.getItems().stream()
+                .map(CartItem::getProduct_id)
+                .distinct()
+                .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Product::get_id, product -> product));
+        Map<String, String> shopNames = userRepository.findShopNames(productsById.values().stream()
+                .filter(product -> !StringUtils.hasText(product.getShopname()) && product.getShopid() != null)
+                .map(Product::getShopid)
+                .collect(Collectors.toSet()));
+
+        Map<String, ProductResponse> productRecords = new LinkedHashMap<>();
+        for (Product product : productsById.values()) {
+            ProductResponse productRecord = new ProductResponse();
+            BeanUtils.copyProperties(product, productRecord);
+            productRecord.setShop_name(StringUtils.hasText(product.getShopname())
+                    ? product.getShopname()
+                    : shopNames.get(product.getShopid()));
+            productRecords.put(product.get_id(), productRecord);
+        }
+
         List<ProductResponse> products = cart.getItems().stream()
-                .map(cartItem -> productRepository.findById(cartItem.getProduct_id())
-                        .map(product -> {
-                            ProductResponse productResponse = new ProductResponse();
-                            BeanUtils.copyProperties(product, productResponse);
-                            productResponse.setQuantity(cartItem.getQuantity());
-                            if (product.getShopname() != null && !product.getShopname().isEmpty()) {
-                                productResponse.setShop_name(product.getShopname());
-                            } else if (product.getShopid() != null) {
-                                userRepository.findBySellerProfileShopId(product.getShopid()).ifPresent(sellerUser -> {
-                                    if (sellerUser.getSellerProfile() != null
-                                            && sellerUser.getSellerProfile().getShopName() != null) {
-                                        productResponse.setShop_name(sellerUser.getSellerProfile().getShopName());
-                                    }
-                                });
-                            }
-                            return productResponse;
-                        })
-                        .orElseGet(() -> {
-                            // If product not found in ProductRepository, return a ProductResponse with
-                            // stock 0
-                            // This allows the frontend to display it as out of stock/unavailable
-                            ProductResponse productResponse = new ProductResponse();
-                            productResponse.set_id(cartItem.getProduct_id());
-                            productResponse.setName("Sản phẩm không còn tồn tại");
-                            productResponse.setStock(0); // Mark as out of stock
-                            productResponse.setQuantity(cartItem.getQuantity());
-                            productResponse.setPrice(0.0); // Set price to 0
-                            productResponse.setImage_url("/soldout.png"); // Use soldout image
-                            return productResponse;
-                        }))
-                .filter(java.util.Objects::nonNull)
+                .map(cartItem -> {
+                    ProductResponse productRecord = productRecords.get(cartItem.getProduct_id());
+                    if (productRecord == null) {
+                        return unavailableProduct(cartItem.getProduct_id(), cartItem.getQuantity());
+                    }
+                    ProductResponse productResponse = new ProductResponse();
+                    BeanUtils.copyProperties(productRecord, productResponse);
+                    productResponse.setQuantity(cartItem.getQuantity());
+                    return productResponse;
+                })
                 .collect(Collectors.toList());
         
-        // Cache lại dữ liệu vừa lấy từ database
+        // Cache lại dữ liệu vừa lấy từ database: giỏ hàng và bản ghi sản phẩm, mỗi loại một pipeline
         cartCacheService.syncCacheWithDatabase(customerId, cart.getItems());
+        productCacheService.cacheProducts(productRecords.values());
         
         return products;
     }
 
+    // If product not found in ProductRepository, return a ProductResponse with stock 0
+    // This allows the frontend to display it as out of stock/unavailable
+    private ProductResponse unavailableProduct(String productId, int quantity) {
+        ProductResponse productResponse = new ProductResponse();
+        productResponse.set_id(productId);
+        productResponse.setName("Sản phẩm không còn tồn tại");
+        productResponse.setStock(0); // Mark as out of stock
+        productResponse.setQuantity(quantity);
+        productResponse.setPrice(Money.ZERO); // Set price to 0
+        productResponse.setImage_url("/soldout.png"); // Use soldout image
+        return productResponse;
+    }
+
+    @Override
+    public LocalDateTime reserveCheckout(String customerId, List<CartItemRequest> items) {
+        return reservationService.reserve(customerId, items);
+    }
+
+    @Override
+    public void releaseCheckout(String customerId) {
+        reservationService.release(customerId);
+    }
+
+    @Override
+    public OrderQuoteResponse quoteOrder(List<CartItemRequest> items) {
+        CartPricingService.PricedCart pricedCart = cartPricingService.price(items);
+        OrderQuoteResponse quote = new OrderQuoteResponse();
+        quote.setItems(pricedCart.getLines().stream()
+                .map(line -> {
+                    OrderQuoteResponse.Line quoteLine = new OrderQuoteResponse.Line();
+                    OrderItem item = line.getItem();
+                    quoteLine.setProduct_id(item.getProduct_id());
+                    quoteLine.setProduct_name(item.getProduct_name());
+                    quoteLine.setImage_url(item.getImage_url());
+                    quoteLine.setShop_id(item.getShop_id());
+                    quoteLine.setShop_name(item.getShop_name());
+                    quoteLine.setQuantity(item.getQuantity());
+                    quoteLine.setUnitPrice(line.getProduct().getPrice() != null ? line.getProduct().getPrice() : Money.ZERO);
+                    quoteLine.setPrice(item.getPrice());
+                    quoteLine.setDiscount(line.getDiscount());
+                    quoteLine.setLineTotal(line.getLineTotal());
+                    quoteLine.setVoucherId(item.getVoucherId());
+                    quoteLine.setInStock(line.isInStock());
+                    return quoteLine;
+                })
+                .collect(Collectors.toList()));
+        quote.setSubtotal(pricedCart.getSubtotal());
+        quote.setDiscount(pricedCart.getDiscount());
+        quote.setTotal(pricedCart.getTotal());
+        return quote;
+    }
+
+    @Override
+    public String createOrderFromCart(String customerId, CreateOrderRequest request, String idempotencyKey) {
+        if (!StringUtils.hasText(idempotencyKey)) {
+            return createOrderFromCart(customerId, request);
+        }
+        // Gửi lại cùng Idempotency-Key trả về đơn đã tạo thay vì tạo đơn mới
+        return orderIdempotencyService.execute(customerId, idempotencyKey, request,
+                () -> createOrderFromCart(customerId, request));
+    }
+
     @Override
     @Transactional
     public String createOrderFromCart(String customerId, CreateOrderRequest request) {
@@ -213,34 +265,25 @@ public class CustomerServiceImpl implements CustomerService {
             throw new RuntimeException("Order items list is empty. Cannot create order.");
         }
 
-        // Kiểm tra xem có đang trong thời gian chờ giữa các yêu cầu đặt hàng hay không
-        Long lastRequestTime = recentOrderRequests.get(customerId);
-        long currentTime = System.currentTimeMillis();
-        if (lastRequestTime != null && (currentTime - lastRequestTime) < ORDER_REQUEST_COOLDOWN_MS) {
-            throw new RuntimeException("Vui lòng đợi trước khi thực hiện yêu cầu đặt hàng tiếp theo.");
-        }
-        recentOrderRequests.put(customerId, currentTime);
-
-        try {
-            // Get shipping address from request or user profile
-            String shippingAddress;
-            if (!StringUtils.hasText(request.getShippingAddress())) {
-                // If no address provided, get from user profile
-                if (user.getBuyerProfile() == null ||
-                        user.getBuyerProfile().getPrimaryAddress() == null) {
-                    throw new RuntimeException("No shipping address found in profile. Please provide a shipping address.");
-                }
-
-                Address primaryAddress = user.getBuyerProfile().getPrimaryAddress();
-                shippingAddress = String.format("%s, %s, %s, %s",
-                        primaryAddress.getStreet(),
-                        primaryAddress.getWard(),
-                        primaryAddress.getDistrict(),
-                        primaryAddress.getCity());
-            } else {
-                shippingAddress = request.getShippingAddress();
+        // Get shipping address from request or user profile
+        String shippingAddress;
+        if (!StringUtils.hasText(request.getShippingAddress())) {
+            // If no address provided, get from user profile
+            if (user.getBuyerProfile() == null ||
+                    user.getBuyerProfile().getPrimaryAddress() == null) {
+                throw new RuntimeException("No shipping address found in profile. Please provide a shipping address.");
             }
 
+            Address primaryAddress = user.getBuyerProfile().getPrimaryAddress();
+            shippingAddress = String.format("%s, %s, %s, %s",
+                    primaryAddress.getStreet(),
+                    primaryAddress.getWard(),
+                    primaryAddress.getDistrict(),
+                    primaryAddress.getCity());
+        } else {
+            shippingAddress = request.getShippingAddress();
+        }
+
         // Validate bank account for bank payment
         if ("Thẻ ngân hàng".equals(request.getPaymentMethod())) {
             if (request.getBankAccount() == null) {
@@ -248,114 +291,125 @@ public class CustomerServiceImpl implements CustomerService {
             }
         }
 
-        Order order = new Order();
-        order.setCustomer_id(customerId);
-        order.setFullName(request.getFullName());
-        order.setPhoneNumber(request.getPhoneNumber());
-        order.setShipping_address(shippingAddress);
-        order.setPayment_method(request.getPaymentMethod());
-        order.setBankAccount(request.getBankAccount());
-        order.setStatus("Pending");
-        order.setCreated_at(LocalDateTime.now());
-        order.setUpdated_at(LocalDateTime.now());
-
-        List<OrderItem> orderItems = new ArrayList<>();
-        BigDecimal total = BigDecimal.ZERO;
-
-        for (CartItemRequest cartItemRequest : request.getItems()) {
-            Product product = productRepository.findById(cartItemRequest.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found: " + cartItemRequest.getProductId()));
-
-            if (product.getStock() < cartItemRequest.getQuantity()) {
-                throw new RuntimeException("Not enough stock for product: " + product.getName());
+        // Tính giá cả giỏ hàng (cùng engine với /orders/quote)
+        CartPricingService.PricedCart pricedCart = cartPricingService.price(request.getItems());
+        for (CartPricingService.PricedLine line : pricedCart.getLines()) {
+            if (!line.isInStock()) {
+                throw new RuntimeException("Not enough stock for product: " + line.getProduct().getName());
             }
-
-            OrderItem orderItem = new OrderItem();
-            orderItem.setProduct_id(product.get_id());
-            orderItem.setQuantity(cartItemRequest.getQuantity());
-
-            BigDecimal itemPrice = new BigDecimal(product.getPrice());
-            String voucherId = cartItemRequest.getVoucherId();
-
-            if (voucherId != null && !voucherId.isEmpty()) {
-                Voucher voucher = voucherService.getVoucherById(voucherId);
-                if (voucher != null && voucherService.isVoucherValid(voucher,
-                        itemPrice.multiply(BigDecimal.valueOf(cartItemRequest.getQuantity())))) {
-                    BigDecimal discount = voucherService.calculateDiscount(voucher,
-                            itemPrice.multiply(BigDecimal.valueOf(cartItemRequest.getQuantity())));
-                    itemPrice = itemPrice.multiply(BigDecimal.valueOf(cartItemRequest.getQuantity())).subtract(discount)
-                            .divide(BigDecimal.valueOf(cartItemRequest.getQuantity()), 2,
-                                    java.math.RoundingMode.HALF_UP); // Calculate discounted unit price
-                    orderItem.setVoucherId(voucherId);
-                }
+        }
+        List<OrderItem> orderItems = pricedCart.getItems();
+
+        // Giữ (hoặc gia hạn) hàng trên Redis trước khi ghi MongoDB: hàng đang được khách khác giữ
+        // thì báo hết hàng ngay, không tốn lượt trừ kho trên các sản phẩm đang nóng
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        Map<String, Product> products = new HashMap<>();
+        for (CartPricingService.PricedLine line : pricedCart.getLines()) {
+            quantities.merge(line.getItem().getProduct_id(), line.getItem().getQuantity(), Integer::sum);
+            products.put(line.getProduct().get_id(), line.getProduct());
+        }
+        reservationService.reserve(customerId, quantities, products);
+
+        // Tách giỏ hàng thành các đơn con theo shop, dùng chung một checkoutId
+        String checkoutId = new ObjectId().toHexString();
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, List<OrderItem>> itemsByShop = new LinkedHashMap<>();
+        for (OrderItem orderItem : orderItems) {
+            itemsByShop.computeIfAbsent(orderItem.getShop_id(), shopId -> new ArrayList<>()).add(orderItem);
+        }
+        Map<String, Money> subtotalByShop = pricedCart.getTotalByShop();
+
+        List<Order> subOrders = new ArrayList<>();
+        for (Map.Entry<String, List<OrderItem>> entry : itemsByShop.entrySet()) {
+            String shopId = entry.getKey();
+            Order order = new Order();
+            order.setCheckout_id(checkoutId);
+            order.setShop_id(shopId);
+            order.setShop_ids(shopId != null ? List.of(shopId) : new ArrayList<>());
+            order.setCustomer_id(customerId);
+            order.setFullName(request.getFullName());
+            order.setPhoneNumber(request.getPhoneNumber());
+            order.setShipping_address(shippingAddress);
+            order.setPayment_method(request.getPaymentMethod());
+            order.setBankAccount(request.getBankAccount());
+            order.setStatus("PENDING");
+            order.setCreated_at(now);
+            order.setUpdated_at(now);
+            order.setItems(entry.getValue());
+            if ("Thẻ ngân hàng".equals(request.getPaymentMethod())) {
+                order.setTotal(Money.ZERO);
+            } else {
+                order.setTotal(subtotalByShop.get(shopId));
             }
-
-            orderItem.setPrice(itemPrice.doubleValue());
-            orderItems.add(orderItem);
-
-            total = total.add(itemPrice.multiply(BigDecimal.valueOf(cartItemRequest.getQuantity())));
-
-            // Deduct stock
-            int newStock = product.getStock() - cartItemRequest.getQuantity();
-            product.setStock(newStock);
-            productRepository.save(product);
-            
-            // Update product stock in all caches
-            productCacheService.updateProductStockInCache(product.get_id(), newStock);
-            cartCacheService.updateProductStockInCache(product.get_id(), newStock);
+            subOrders.add(order);
         }
 
-        order.setItems(orderItems);
-
-        if ("Thẻ ngân hàng".equals(request.getPaymentMethod())) {
-            order.setTotal(0.0);
-        } else {
-            order.setTotal(total.doubleValue());
+        Map<String, Integer> newStocks;
+        List<Order> savedOrders;
+        try {
+            // Trừ kho có điều kiện stock >= quantity cho từng sản phẩm (không bán vượt khi checkout đồng thời);
+            // nếu một sản phẩm thiếu hàng thì các sản phẩm đã trừ được cộng lại
+            newStocks = inventoryService.decrementStock(orderItems);
+            try {
+                savedOrders = orderBatchWriter.insertAll(subOrders);
+            } catch (RuntimeException e) {
+                inventoryService.restoreStock(orderItems);
+                throw e;
+            }
+        } finally {
+            // Stock đã trừ thật trong MongoDB (hoặc checkout thất bại), luôn trả lượt giữ hàng
+            try {
+                reservationService.release(customerId);
+            } catch (RuntimeException e) {
+                System.err.println("Error releasing stock reservation for customer " + customerId + ": " + e.getMessage());
+            }
         }
 
-        Order savedOrder = orderRepository.save(order);
+        // Các việc phụ (cache, thống kê shop, dọn giỏ hàng) chạy nền sau khi đơn đã lưu
+        List<PostCheckoutPipeline.Step> steps = new ArrayList<>();
 
-        // Tracking hành vi mua sản phẩm vào Neo4j
-        for (OrderItem item : orderItems) {
-            recommendationService.recordProductPurchase(customerId, item.getProduct_id(), item.getQuantity());
+        // Ghi sự kiện mua vào outbox ngay sau khi lưu đơn, OutboxRelayJob sẽ đẩy sang Neo4j.
+        // Ghi lỗi thì chuyển sang pipeline để thử lại (ghi lại không tạo trùng), hết lượt thì vào dead letter
+        try {
+            outboxService.publishPurchases(customerId, checkoutId, orderItems);
+        } catch (RuntimeException e) {
+            System.err.println("Error writing purchase events to outbox for checkout " + checkoutId + ", retrying: "
+                    + e.getMessage());
+            steps.add(new PostCheckoutPipeline.Step("publish-purchase-events",
+                    () -> outboxService.publishPurchases(customerId, checkoutId, orderItems)));
         }
-
+        // Giỏ hàng cache chỉ tham chiếu sản phẩm theo id, cập nhật bản ghi sản phẩm là đủ
+        steps.add(new PostCheckoutPipeline.Step("update-stock-caches", () -> newStocks
+                .forEach(productCacheService::updateProductStockInCache)));
+        steps.add(new PostCheckoutPipeline.Step("record-seller-stats", () -> {
+            for (Order savedOrder : savedOrders) {
+                sellerStatsService.recordOrderCreated(savedOrder);
+            }
+        }));
         // Remove only ordered items from cart after order creation if it's not a 'Buy
         // Now' purchase
         if (!request.isBuyNow()) {
-            Cart cart = cartRepository.findByCustomerId(customerId)
-                    .orElseThrow(() -> new RuntimeException("No cart found"));
             List<String> orderedProductIds = request.getItems().stream()
                     .map(CartItemRequest::getProductId)
                     .collect(Collectors.toList());
-            cart.getItems().removeIf(item -> orderedProductIds.contains(item.getProduct_id()));
-
-            // Update and save the cart status and items after removal
-            cart.setStatus("active"); // Keep cart active for remaining items
-            cart.setUpdated_at(LocalDateTime.now());
-            cartRepository.save(cart); // Ensure the cart is saved after modifications
-            
-            // Remove ordered items from cache as well
-            cartCacheService.removeOrderedItemsFromCache(customerId, orderedProductIds);
+            steps.add(new PostCheckoutPipeline.Step("remove-ordered-cart-items",
+                    () -> removeOrderedItemsFromCart(customerId, orderedProductIds)));
         }
+        postCheckoutPipeline.submit(customerId, checkoutId, steps);
 
-        // Xóa cache request sau khi order thành công
-        recentOrderRequests.remove(customerId);
+        return checkoutId;
+    }
 
-        return savedOrder.get_id();
-        
-        } catch (Exception e) {
-            // Xóa cache request khi có lỗi để không làm người dùng phải đợi lâu
-            recentOrderRequests.remove(customerId);
-            throw e;
+    private void removeOrderedItemsFromCart(String customerId, List<String> orderedProductIds) {
+        if (cartWriteBehindService.isEnabled()) {
+            // Write-behind: checkout ghi ngay giỏ hàng xuống MongoDB, không chờ lần flush kế tiếp
+            cartWriteBehindService.removeOrderedItems(customerId, orderedProductIds);
+            return;
         }
-    }
+        // Giữ các sản phẩm còn lại trong giỏ, chỉ $pull các sản phẩm đã đặt
+        cartRepository.removeItems(customerId, orderedProductIds);
 
-    // Assuming UserProfileResponse is an existing DTO for user information
-    private UserProfileResponse convertToUserProfileResponse(User user) {
-        UserProfileResponse response = new UserProfileResponse();
-        // Copy relevant properties from user to UserProfileResponse
-        BeanUtils.copyProperties(user, response);
-        return response;
+        // Remove ordered items from cache as well
+        cartCacheService.removeOrderedItemsFromCache(customerId, orderedProductIds);
     }
 }
\ No newline at end of file
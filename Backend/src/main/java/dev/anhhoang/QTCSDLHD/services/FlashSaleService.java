@@ -0,0 +1,282 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import dev.anhhoang.QTCSDLHD.models.Product;
+import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+
+/**
+ * Chế độ flash sale cho sản phẩm bán chạy: khi bật, stock chính xác nằm ở counter Redis và
+ * checkout trừ kho bằng Lua script, không đọc/ghi document sản phẩm trên MongoDB.
+ * Số lượng đã trừ được gộp trong hash flash:pending và FlashSaleStockFlushJob ghi xuống
+ * Product.stock theo batch; batch đang ghi nằm ở flash:pending:processing tới khi ghi xong.
+ */
+@Service
+public class FlashSaleService {
+
+    private static final String ACTIVE_KEY = "flash:products";
+    private static final String STOCK_KEY_PREFIX = "flash:stock:";
+    private static final String PENDING_KEY = "flash:pending";
+    private static final String PROCESSING_KEY = "flash:pending:processing";
+    private static final String BATCH_FIELD = "_batch";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCacheService productCacheService;
+
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> decrementScript = new DefaultRedisScript<>();
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> incrementScript = new DefaultRedisScript<>();
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> drainScript = new DefaultRedisScript<>();
+
+    public FlashSaleService() {
+        decrementScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/flash_decrement.lua")));
+        decrementScript.setResultType(List.class);
+        incrementScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/flash_increment.lua")));
+        incrementScript.setResultType(List.class);
+        drainScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/flash_drain.lua")));
+        drainScript.setResultType(List.class);
+    }
+
+    /**
+     * Bật flash sale: đặt cờ flash_sale trên MongoDB trước (từ đó checkout không trừ stock trên MongoDB nữa),
+     * lấy stock tại đúng thời điểm đặt cờ nạp lên Redis rồi mới đánh dấu sản phẩm trên Redis
+     */
+    public Product enable(String productId) {
+        Product product = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(productId).and("flash_sale").ne(true)),
+                new Update().set("flash_sale", true),
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        if (product == null) {
+            product = productRepository.findById(productId)
+                    .orElseThrow(() -> new RuntimeException("Product not found"));
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForSet().isMember(ACTIVE_KEY, productId))) {
+                return product;
+            }
+            // Lần bật/tắt trước dừng giữa chừng: ghi hết phần còn chờ để stock trên MongoDB là mới nhất
+            flushPending();
+            if (hasPending(productId)) {
+                throw new RuntimeException("Could not persist flash sale stock, please try again");
+            }
+            product = productRepository.findById(productId).orElse(product);
+        }
+        // SET NX: counter còn lại từ lần bật dở dang (hoặc lượt bật đồng thời) vẫn là stock đúng, không ghi đè
+        String stockKey = STOCK_KEY_PREFIX + productId;
+        stringRedisTemplate.opsForValue().setIfAbsent(stockKey,
+                String.valueOf(product.getStock() != null ? product.getStock() : 0));
+        int stock = Integer.parseInt(stringRedisTemplate.opsForValue().get(stockKey));
+        stringRedisTemplate.opsForSet().add(ACTIVE_KEY, productId);
+        refreshCaches(productId, true, stock);
+        return product;
+    }
+
+    /**
+     * Tắt flash sale: ngừng trừ kho trên Redis, ghi hết phần còn chờ xuống MongoDB rồi xóa counter
+     */
+    public Product disable(String productId) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
+        stringRedisTemplate.opsForSet().remove(ACTIVE_KEY, productId);
+        flushPending();
+        if (hasPending(productId)) {
+            throw new RuntimeException("Could not persist flash sale stock, please try again");
+        }
+        stringRedisTemplate.delete(STOCK_KEY_PREFIX + productId);
+        product = productRepository.findById(productId).orElse(product);
+        setFlag(product, false);
+        refreshCaches(productId, false, product.getStock() != null ? product.getStock() : 0);
+        return product;
+    }
+
+    /**
+     * Các sản phẩm đang flash sale trong danh sách, một lệnh SMISMEMBER
+     */
+    public Set<String> activeAmong(Collection<String> productIds) {
+        Set<String> active = new HashSet<>();
+        if (productIds.isEmpty()) {
+            return active;
+        }
+        Map<Object, Boolean> members = stringRedisTemplate.opsForSet().isMember(ACTIVE_KEY, productIds.toArray());
+        if (members != null) {
+            members.forEach((productId, member) -> {
+                if (Boolean.TRUE.equals(member)) {
+                    active.add((String) productId);
+                }
+            });
+        }
+        return active;
+    }
+
+    /**
+     * Trừ stock flash sale cho cả đơn trong một lần gọi Lua
+     *
+     * @return stock mới của từng sản phẩm
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Integer> decrement(Map<String, Integer> quantities, Map<String, String> names) {
+        List<String> productIds = new ArrayList<>(quantities.keySet());
+        List<Object> result = stringRedisTemplate.execute(decrementScript, List.of(PENDING_KEY),
+                quantityArgs(quantities, productIds));
+        long status = ((Number) result.get(0)).longValue();
+        if (status != 0) {
+            String productId = productIds.get((int) Math.abs(status) - 1);
+            if (status < 0) {
+                throw new RuntimeException("Flash sale for product " + productId + " just ended, please try again");
+            }
+            String name = names.get(productId) != null ? names.get(productId) : productId;
+            throw new RuntimeException("Not enough stock for product: " + name);
+        }
+        Map<String, Integer> newStocks = new HashMap<>();
+        for (int i = 0; i < productIds.size(); i++) {
+            newStocks.put(productIds.get(i), ((Number) result.get(i + 1)).intValue());
+        }
+        return newStocks;
+    }
+
+    /**
+     * Cộng lại stock flash sale
+     *
+     * @return phần không áp dụng được vì sản phẩm đã hết flash sale
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Integer> increment(Map<String, Integer> quantities) {
+        List<String> productIds = new ArrayList<>(quantities.keySet());
+        List<Object> skipped = stringRedisTemplate.execute(incrementScript, List.of(PENDING_KEY),
+                quantityArgs(quantities, productIds));
+        Map<String, Integer> rest = new HashMap<>();
+        if (skipped != null) {
+            for (Object productId : skipped) {
+                rest.put((String) productId, quantities.get((String) productId));
+            }
+        }
+        return rest;
+    }
+
+    /**
+     * Stock flash sale hiện tại, chỉ trả về sản phẩm còn counter trên Redis
+     */
+    public Map<String, Integer> getStocks(Collection<String> productIds) {
+        Map<String, Integer> stocks = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return stocks;
+        }
+        List<String> ids = new ArrayList<>(productIds);
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(ids.stream()
+                .map(id -> STOCK_KEY_PREFIX + id)
+                .toList());
+        if (values != null) {
+            for (int i = 0; i < ids.size(); i++) {
+                if (values.get(i) != null) {
+                    stocks.put(ids.get(i), Integer.parseInt(values.get(i)));
+                }
+            }
+        }
+        return stocks;
+    }
+
+    /**
+     * Thay Product.stock (ghi trễ) bằng stock hiện tại trên Redis cho các sản phẩm đang flash sale
+     */
+    public void applyLiveStock(Collection<Product> products) {
+        Map<String, Product> flashSale = new HashMap<>();
+        for (Product product : products) {
+            if (Boolean.TRUE.equals(product.getFlash_sale())) {
+                flashSale.put(product.get_id(), product);
+            }
+        }
+        if (!flashSale.isEmpty()) {
+            getStocks(flashSale.keySet()).forEach((productId, stock) -> flashSale.get(productId).setStock(stock));
+        }
+    }
+
+    /**
+     * Ghi số lượng đã trừ xuống Product.stock bằng một bulkWrite. Batch chỉ bị xóa khỏi Redis sau khi
+     * ghi xong; lỗi (hoặc tiến trình chết) thì lần sau ghi lại đúng batch đó, không mất số lượng đã bán
+     *
+     * @return số sản phẩm đã ghi
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized int flushPending() {
+        List<Object> pending = stringRedisTemplate.execute(drainScript, List.of(PENDING_KEY, PROCESSING_KEY),
+                UUID.randomUUID().toString());
+        if (pending == null || pending.isEmpty()) {
+            return 0;
+        }
+        String batchId = null;
+        Map<String, Integer> deltas = new HashMap<>();
+        for (int i = 0; i + 1 < pending.size(); i += 2) {
+            String field = pending.get(i).toString();
+            if (BATCH_FIELD.equals(field)) {
+                batchId = pending.get(i + 1).toString();
+                continue;
+            }
+            int quantity = Integer.parseInt(pending.get(i + 1).toString());
+            if (quantity != 0) {
+                deltas.put(field, -quantity);
+            }
+        }
+        productRepository.incrementStock(deltas, batchId);
+        stringRedisTemplate.delete(PROCESSING_KEY);
+        return deltas.size();
+    }
+
+    // Sản phẩm còn số lượng chưa ghi xuống MongoDB (đang chờ hoặc đang ghi)
+    private boolean hasPending(String productId) {
+        return stringRedisTemplate.opsForHash().hasKey(PENDING_KEY, productId)
+                || stringRedisTemplate.opsForHash().hasKey(PROCESSING_KEY, productId);
+    }
+
+    private void setFlag(Product product, boolean flashSale) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(product.get_id())),
+                new Update().set("flash_sale", flashSale), Product.class);
+        product.setFlash_sale(flashSale);
+    }
+
+    private void refreshCaches(String productId, boolean flashSale, int stock) {
+        try {
+            productCacheService.updateFlashSaleInCache(productId, flashSale, stock);
+        } catch (Exception e) {
+            System.err.println("Error updating flash sale state in cache for product " + productId + ": "
+                    + e.getMessage());
+        }
+    }
+
+    private static Object[] quantityArgs(Map<String, Integer> quantities, List<String> productIds) {
+        List<String> args = new ArrayList<>();
+        args.add(STOCK_KEY_PREFIX);
+        for (String productId : productIds) {
+            args.add(productId);
+            args.add(String.valueOf(quantities.get(productId)));
+        }
+        return args.toArray();
+    }
+}
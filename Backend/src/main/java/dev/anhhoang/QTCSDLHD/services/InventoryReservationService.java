@@ -0,0 +1,161 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import dev.anhhoang.QTCSDLHD.dto.CartItemRequest;
+import dev.anhhoang.QTCSDLHD.models.Product;
+import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+
+/**
+ * Giữ hàng có thời hạn cho khách đang checkout, lưu trên Redis.
+ * Khi vào trang thanh toán, số lượng trong giỏ được giữ trong checkout-ttl; khách khác chỉ
+ * thấy và mua được stock - reserved. Đặt hàng thành công thì trừ stock thật trong MongoDB
+ * và trả lượt giữ; hết hạn thì ReservationSweeperJob trả lại.
+ * Mỗi khách có tối đa một lượt giữ, giữ lại sẽ thay thế lượt cũ.
+ */
+@Service
+public class InventoryReservationService {
+
+    private static final String PRODUCT_KEY_PREFIX = "resv:product:";
+    private static final String CHECKOUT_KEY_PREFIX = "resv:checkout:";
+    private static final String EXPIRY_KEY = "resv:expiry";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    // Thời gian giữ hàng cho một lượt checkout
+    @Value("${inventory.reservation.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private final DefaultRedisScript<Long> reserveScript = new DefaultRedisScript<>();
+    private final DefaultRedisScript<Long> releaseScript = new DefaultRedisScript<>();
+
+    public InventoryReservationService() {
+        reserveScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/reserve_stock.lua")));
+        reserveScript.setResultType(Long.class);
+        releaseScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/release_stock.lua")));
+        releaseScript.setResultType(Long.class);
+    }
+
+    /**
+     * Giữ hàng cho các sản phẩm khách đang thanh toán, trả về thời điểm hết hạn
+     */
+    public LocalDateTime reserve(String customerId, List<CartItemRequest> items) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (CartItemRequest item : items) {
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new RuntimeException("Invalid quantity for product: " + item.getProductId());
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        Map<String, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::get_id, Function.identity()));
+        flashSaleService.applyLiveStock(products.values());
+        return reserve(customerId, quantities, products);
+    }
+
+    /**
+     * Giữ hàng với sản phẩm đã được đọc sẵn (dùng khi tạo đơn)
+     */
+    public LocalDateTime reserve(String customerId, Map<String, Integer> quantities, Map<String, Product> products) {
+        long expiresAt = System.currentTimeMillis() + ttlSeconds * 1000;
+        List<String> productIds = new ArrayList<>(quantities.keySet());
+        List<String> args = new ArrayList<>();
+        args.add(customerId);
+        args.add(String.valueOf(expiresAt));
+        args.add(PRODUCT_KEY_PREFIX);
+        for (String productId : productIds) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new RuntimeException("Product not found: " + productId);
+            }
+            args.add(productId);
+            args.add(String.valueOf(quantities.get(productId)));
+            args.add(String.valueOf(product.getStock() != null ? product.getStock() : 0));
+        }
+
+        Long failed = stringRedisTemplate.execute(reserveScript,
+                List.of(CHECKOUT_KEY_PREFIX + customerId, EXPIRY_KEY), args.toArray());
+        if (failed != null && failed > 0) {
+            Product product = products.get(productIds.get(failed.intValue() - 1));
+            throw new RuntimeException("Not enough stock for product: " + product.getName());
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAt), ZoneId.systemDefault());
+    }
+
+    /**
+     * Trả lại hàng đang giữ của khách (đã đặt hàng xong hoặc rời trang thanh toán)
+     */
+    public void release(String customerId) {
+        stringRedisTemplate.execute(releaseScript, List.of(CHECKOUT_KEY_PREFIX + customerId, EXPIRY_KEY),
+                customerId, PRODUCT_KEY_PREFIX, "");
+    }
+
+    /**
+     * Trả lại các lượt giữ đã hết hạn, trả về số lượt đã trả
+     */
+    public int releaseExpired() {
+        String now = String.valueOf(System.currentTimeMillis());
+        Set<String> expired = stringRedisTemplate.opsForZSet().rangeByScore(EXPIRY_KEY, 0, Double.parseDouble(now));
+        if (expired == null || expired.isEmpty()) {
+            return 0;
+        }
+        int released = 0;
+        for (String customerId : expired) {
+            Long items = stringRedisTemplate.execute(releaseScript,
+                    List.of(CHECKOUT_KEY_PREFIX + customerId, EXPIRY_KEY), customerId, PRODUCT_KEY_PREFIX, now);
+            if (items != null && items > 0) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Tổng số lượng đang được giữ của các sản phẩm, một lần MGET
+     */
+    public Map<String, Integer> getReservedQuantities(Collection<String> productIds) {
+        Map<String, Integer> reserved = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return reserved;
+        }
+        List<String> ids = new ArrayList<>(productIds);
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(ids.stream()
+                .map(id -> PRODUCT_KEY_PREFIX + id)
+                .collect(Collectors.toList()));
+        if (values == null) {
+            return reserved;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            if (values.get(i) != null) {
+                reserved.put(ids.get(i), Integer.parseInt(values.get(i)));
+            }
+        }
+        return reserved;
+    }
+}
@@ -0,0 +1,208 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.models.OrderItem;
+import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+
+/**
+ * Các thao tác thay đổi tồn kho (stock) của sản phẩm theo đơn hàng.
+ */
+@Service
+public class InventoryService {
+
+    // Giá trị của stock_restore khi đơn đã hủy nhưng stock chưa được cộng lại xong
+    public static final String RESTORING = "RESTORING";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCacheService productCacheService;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
+    /**
+     * Hủy đơn và hoàn kho cho toàn bộ item trong đơn.
+     * Việc chuyển status sang CANCELLED, đặt cờ stock_restored và marker stock_restore=RESTORING
+     * được làm trong một findAndModify có điều kiện, nên hai request hủy đồng thời chỉ có một request
+     * được hoàn kho. Stock sau đó được cộng lại bằng một lệnh bulkWrite $inc, marker chỉ bị xóa khi
+     * bulkWrite thành công; nếu lỗi, StockRestoreReplayJob chạy lại phần hoàn kho còn dang dở.
+     *
+     * @param guard điều kiện bổ sung cho đơn (chủ sở hữu, status được phép hủy)
+     * @return đơn hàng trước khi hủy, hoặc null nếu không thỏa điều kiện / đã hủy trước đó
+     */
+    public Order cancelAndRestoreStock(String orderId, Criteria guard) {
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("_id").is(orderId),
+                Criteria.where("stock_restored").ne(true),
+                guard));
+        Update update = new Update()
+                .set("status", "CANCELLED")
+                .set("stock_restored", true)
+                .set("stock_restore", RESTORING)
+                .set("updated_at", LocalDateTime.now());
+        Order previous = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(false), Order.class);
+        if (previous == null) {
+            return null;
+        }
+        try {
+            restoreStock(previous);
+        } catch (Exception e) {
+            // Đơn đã hủy, marker RESTORING vẫn còn nên job sẽ hoàn kho lại sau
+            System.err.println("Error restoring stock for order " + previous.get_id() + ", will be replayed: "
+                    + e.getMessage());
+        }
+        return previous;
+    }
+
+    /**
+     * Chạy lại phần hoàn kho cho đơn còn marker RESTORING (do lần hoàn kho trước bị lỗi / tiến trình dừng giữa chừng).
+     * Stock trên MongoDB được cộng theo orderId nên sản phẩm đã cộng ở lần trước không bị cộng trùng.
+     *
+     * @return true nếu đã hoàn kho xong và xóa marker
+     */
+    public boolean replayRestore(Order order) {
+        if (!RESTORING.equals(order.getStock_restore())) {
+            return false;
+        }
+        restoreStock(order);
+        return true;
+    }
+
+    /**
+     * Trừ kho cho các item của đơn hàng, mỗi sản phẩm một lệnh $inc có điều kiện stock >= quantity
+     * nên không thể bán vượt số lượng khi nhiều checkout chạy đồng thời.
+     * Nếu một sản phẩm không đủ hàng, các sản phẩm đã trừ trước đó được cộng lại (bù trừ).
+     * Sản phẩm đang flash sale được trừ trên Redis (FlashSaleService) trong một lần gọi.
+     *
+     * @return stock mới của từng sản phẩm
+     */
+    public Map<String, Integer> decrementStock(List<OrderItem> items) {
+        // Gộp các dòng cùng sản phẩm, xử lý theo thứ tự product id cố định
+        Map<String, Integer> quantities = new TreeMap<>();
+        Map<String, String> names = new HashMap<>();
+        for (OrderItem item : items) {
+            quantities.merge(item.getProduct_id(), item.getQuantity(), Integer::sum);
+            names.putIfAbsent(item.getProduct_id(), item.getProduct_name());
+        }
+
+        Map<String, Integer> newStocks = new LinkedHashMap<>();
+        Map<String, Integer> decremented = new HashMap<>();
+        Set<String> flashSale = flashSaleService.activeAmong(quantities.keySet());
+        if (!flashSale.isEmpty()) {
+            Map<String, Integer> flashQuantities = new TreeMap<>();
+            flashSale.forEach(productId -> flashQuantities.put(productId, quantities.remove(productId)));
+            newStocks.putAll(flashSaleService.decrement(flashQuantities, names));
+            decremented.putAll(flashQuantities);
+        }
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            Integer newStock;
+            try {
+                newStock = productRepository.decrementStockIfAvailable(line.getKey(), line.getValue());
+            } catch (RuntimeException e) {
+                compensate(decremented);
+                throw e;
+            }
+            if (newStock == null) {
+                compensate(decremented);
+                String name = names.get(line.getKey()) != null ? names.get(line.getKey()) : line.getKey();
+                throw new RuntimeException("Not enough stock for product: " + name);
+            }
+            decremented.put(line.getKey(), line.getValue());
+            newStocks.put(line.getKey(), newStock);
+        }
+        return newStocks;
+    }
+
+    /**
+     * Cộng lại stock đã trừ cho các item (khi checkout lỗi sau khi đã trừ kho)
+     */
+    public void restoreStock(List<OrderItem> items) {
+        Map<String, Integer> quantities = new HashMap<>();
+        for (OrderItem item : items) {
+            quantities.merge(item.getProduct_id(), item.getQuantity(), Integer::sum);
+        }
+        compensate(quantities);
+    }
+
+    private void compensate(Map<String, Integer> decremented) {
+        if (decremented.isEmpty()) {
+            return;
+        }
+        try {
+            incrementStock(decremented, null);
+        } catch (Exception e) {
+            System.err.println("Error compensating stock " + decremented + ": " + e.getMessage());
+        }
+    }
+
+    private void restoreStock(Order order) {
+        Map<String, Integer> quantities = new HashMap<>();
+        if (order.getItems() != null) {
+            for (OrderItem item : order.getItems()) {
+                if (item.getProduct_id() != null && item.getQuantity() != null) {
+                    quantities.merge(item.getProduct_id(), item.getQuantity(), Integer::sum);
+                }
+            }
+        }
+        if (!quantities.isEmpty()) {
+            incrementStock(quantities, order.get_id());
+        }
+        // Chỉ xóa marker sau khi stock đã được cộng
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(order.get_id()).and("stock_restore").is(RESTORING)),
+                new Update().unset("stock_restore"), Order.class);
+        // Stock trong cache không còn đúng, xóa để lần đọc sau lấy lại từ database
+        try {
+            quantities.keySet().forEach(productCacheService::evictProductFromCache);
+        } catch (Exception e) {
+            System.err.println("Error evicting product cache for order " + order.get_id() + ": " + e.getMessage());
+        }
+    }
+
+    // Sản phẩm đang flash sale được cộng trên Redis (một script, cộng tất cả hoặc không), phần còn lại
+    // (kể cả sản phẩm vừa tắt flash sale) cộng trên MongoDB. Có orderId thì MongoDB cộng theo đơn và được ghi trước Redis,
+    // nên chạy lại sau khi lỗi giữa chừng không cộng trùng
+    private void incrementStock(Map<String, Integer> quantities, String orderId) {
+        Map<String, Integer> rest = new HashMap<>(quantities);
+        Map<String, Integer> flashQuantities = new HashMap<>();
+        flashSaleService.activeAmong(quantities.keySet())
+                .forEach(productId -> flashQuantities.put(productId, rest.remove(productId)));
+        incrementInMongo(rest, orderId);
+        if (!flashQuantities.isEmpty()) {
+            incrementInMongo(flashSaleService.increment(flashQuantities), orderId);
+        }
+    }
+
+    private void incrementInMongo(Map<String, Integer> quantities, String orderId) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        if (orderId != null) {
+            productRepository.restockForOrder(quantities, orderId);
+        } else {
+            productRepository.incrementStock(quantities);
+        }
+    }
+}
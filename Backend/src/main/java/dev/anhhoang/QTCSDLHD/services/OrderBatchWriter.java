@@ -0,0 +1,214 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.repositories.OrderRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ghi đơn hàng mới theo kiểu group commit: các request đưa đơn đã kiểm tra xong vào hàng đợi,
+ * một thread ghi gom lại và insertMany mỗi orders.group-commit.max-wait-ms hoặc khi đủ max-batch đơn.
+ * Mỗi request chờ future của mình và nhận lại đơn đã có _id.
+ * Tắt (mặc định) thì ghi trực tiếp bằng orderRepository.saveAll như trước.
+ */
+@Service
+public class OrderBatchWriter {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Value("${orders.group-commit.enabled:false}")
+    private boolean enabled;
+
+    // Số đơn tối đa mỗi lần insertMany
+    @Value("${orders.group-commit.max-batch:64}")
+    private int maxBatch;
+
+    // Thời gian tối đa một đơn chờ trong hàng đợi trước khi được ghi
+    @Value("${orders.group-commit.max-wait-ms:5}")
+    private long maxWaitMs;
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong writtenOrders = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private volatile boolean running;
+    private Thread writer;
+
+    // Các đơn con của một lượt checkout, được ghi cùng một batch
+    private static class PendingWrite {
+        private final List<Order> orders;
+        private final CompletableFuture<List<Order>> result = new CompletableFuture<>();
+
+        PendingWrite(List<Order> orders) {
+            this.orders = orders;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::run, "order-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writer != null) {
+            writer.interrupt();
+        }
+    }
+
+    /**
+     * Ghi các đơn và trả về đơn đã có _id
+     */
+    public List<Order> insertAll(List<Order> orders) {
+        if (!enabled) {
+            return orderRepository.saveAll(orders);
+        }
+        if (!running) {
+            throw new RuntimeException("Order writer stopped");
+        }
+        PendingWrite pending = new PendingWrite(orders);
+        queue.add(pending);
+        // stop() chạy xen giữa: thread ghi có thể đã dọn hàng đợi xong, tự rút ra để không chờ mãi
+        if (!running && queue.remove(pending)) {
+            throw new RuntimeException("Order writer stopped");
+        }
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Error saving orders: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Thông số theo dõi: số batch, kích thước batch, số đơn đang chờ
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queuedWrites", queue.size());
+        stats.put("batches", batches.get());
+        stats.put("writtenOrders", writtenOrders.get());
+        stats.put("failedBatches", failedBatches.get());
+        stats.put("averageBatchSize", batches.get() > 0 ? (double) writtenOrders.get() / batches.get() : 0.0);
+        stats.put("lastBatchSize", lastBatchSize.get());
+        stats.put("maxBatchSize", maxBatchSize.get());
+        return stats;
+    }
+
+    private void run() {
+        while (running) {
+            List<PendingWrite> batch = new ArrayList<>();
+            try {
+                PendingWrite first = queue.take();
+                batch.add(first);
+                int size = first.orders.size();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (size < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    size += next.orders.size();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failAll(batch, new RuntimeException("Order writer stopped"));
+                break;
+            }
+            flush(batch);
+        }
+        // Không để request nào chờ mãi khi ứng dụng dừng
+        List<PendingWrite> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        failAll(rest, new RuntimeException("Order writer stopped"));
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<Order> orders = new ArrayList<>();
+        batch.forEach(pending -> orders.addAll(pending.orders));
+        // Gán _id trước khi ghi để khi batch lỗi giữa chừng biết được đơn nào đã vào database
+        orders.stream().filter(order -> order.get_id() == null)
+                .forEach(order -> order.set_id(new ObjectId().toHexString()));
+        try {
+            mongoTemplate.insert(orders, Order.class);
+            record(orders.size());
+            batch.forEach(pending -> pending.result.complete(pending.orders));
+        } catch (RuntimeException e) {
+            failedBatches.incrementAndGet();
+            System.err.println("Error inserting batch of " + orders.size() + " orders, retrying per checkout: "
+                    + e.getMessage());
+            // Ghi lại từng lượt checkout để một đơn lỗi không làm hỏng cả batch
+            for (PendingWrite pending : batch) {
+                try {
+                    List<Order> saved = new ArrayList<>();
+                    for (Order order : pending.orders) {
+                        saved.add(orderRepository.existsById(order.get_id()) ? order : mongoTemplate.insert(order));
+                    }
+                    record(saved.size());
+                    pending.result.complete(saved);
+                } catch (RuntimeException retryError) {
+                    // Lượt checkout lỗi thì xóa các đơn con đã ghi, người gọi sẽ hoàn kho cho cả lượt
+                    removePartial(pending);
+                    pending.result.completeExceptionally(retryError);
+                }
+            }
+        }
+    }
+
+    private void removePartial(PendingWrite pending) {
+        List<String> ids = pending.orders.stream().map(Order::get_id).toList();
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)), Order.class);
+        } catch (RuntimeException e) {
+            System.err.println("Error removing partially inserted orders " + ids + ": " + e.getMessage());
+        }
+    }
+
+    private void record(int size) {
+        batches.incrementAndGet();
+        writtenOrders.addAndGet(size);
+        lastBatchSize.set(size);
+        maxBatchSize.accumulateAndGet(size, Math::max);
+    }
+
+    private static void failAll(List<PendingWrite> batch, RuntimeException error) {
+        batch.forEach(pending -> pending.result.completeExceptionally(error));
+    }
+}
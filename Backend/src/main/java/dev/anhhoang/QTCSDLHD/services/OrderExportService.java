@@ -0,0 +1,177 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.models.OrderItem;
+
+/**
+ * Xuất báo cáo đơn hàng của shop dạng CSV hoặc NDJSON.
+ * Đọc MongoDB bằng cursor theo từng batch và ghi thẳng ra response,
+ * bộ nhớ sử dụng không phụ thuộc vào số lượng đơn hàng.
+ */
+@Service
+public class OrderExportService {
+
+    private static final int CURSOR_BATCH_SIZE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public enum Format {
+        CSV, NDJSON;
+
+        public static Format from(String value) {
+            if (value == null || value.isEmpty() || "csv".equalsIgnoreCase(value)) {
+                return CSV;
+            }
+            if ("ndjson".equalsIgnoreCase(value)) {
+                return NDJSON;
+            }
+            throw new IllegalArgumentException("Invalid export format: " + value);
+        }
+    }
+
+    public void exportShopOrders(String shopId, LocalDateTime from, LocalDateTime to, Format format, OutputStream out)
+            throws IOException {
+        Criteria criteria = Criteria.where("shop_ids").is(shopId);
+        if (from != null && to != null) {
+            criteria = criteria.and("created_at").gte(from).lt(to);
+        } else if (from != null) {
+            criteria = criteria.and("created_at").gte(from);
+        } else if (to != null) {
+            criteria = criteria.and("created_at").lt(to);
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "created_at"));
+        // Chỉ lấy các field cần cho báo cáo (không đọc thông tin thanh toán)
+        query.fields().include("customer_id", "fullName", "status", "created_at", "items");
+        query.cursorBatchSize(CURSOR_BATCH_SIZE);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write("order_id,created_at,status,customer_name,product_id,quantity,price,line_revenue\n");
+        }
+        // Đơn đang hoạt động trước, sau đó tới các đơn cũ đã lưu trữ
+        writeOrders(mongoTemplate.stream(query, Order.class), writer, shopId, format);
+        writeOrders(mongoTemplate.stream(query, Order.class, Order.ARCHIVE_COLLECTION), writer, shopId, format);
+        writer.flush();
+    }
+
+    private void writeOrders(Stream<Order> stream, Writer writer, String shopId, Format format) throws IOException {
+        try (Stream<Order> orders = stream) {
+            orders.forEach(order -> {
+                try {
+                    if (format == Format.CSV) {
+                        writeCsvRows(writer, order, shopId);
+                    } else {
+                        writeNdjsonRow(writer, order, shopId);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Mỗi item của shop là một dòng CSV
+    private void writeCsvRows(Writer writer, Order order, String shopId) throws IOException {
+        for (OrderItem item : shopItems(order, shopId)) {
+            writer.write(csv(order.get_id()));
+            writer.write(',');
+            writer.write(csv(order.getCreated_at() != null ? order.getCreated_at().toString() : ""));
+            writer.write(',');
+            writer.write(csv(order.getStatus()));
+            writer.write(',');
+            writer.write(csv(order.getFullName()));
+            writer.write(',');
+            writer.write(csv(item.getProduct_id()));
+            writer.write(',');
+            writer.write(String.valueOf(item.getQuantity()));
+            writer.write(',');
+            writer.write(String.valueOf(item.getPrice()));
+            writer.write(',');
+            writer.write(String.valueOf(lineRevenue(item)));
+            writer.write('\n');
+        }
+    }
+
+    // Mỗi đơn hàng là một dòng JSON, chỉ gồm item và doanh thu của shop
+    private void writeNdjsonRow(Writer writer, Order order, String shopId) throws IOException {
+        List<Map<String, Object>> items = new ArrayList<>();
+        long revenue = 0L;
+        for (OrderItem item : shopItems(order, shopId)) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("product_id", item.getProduct_id());
+            row.put("quantity", item.getQuantity());
+            row.put("price", item.getPrice());
+            row.put("line_revenue", lineRevenue(item));
+            items.add(row);
+            revenue += lineRevenue(item);
+        }
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("order_id", order.get_id());
+        row.put("created_at", order.getCreated_at() != null ? order.getCreated_at().toString() : null);
+        row.put("status", order.getStatus());
+        row.put("customer_id", order.getCustomer_id());
+        row.put("customer_name", order.getFullName());
+        row.put("items", items);
+        row.put("revenue", revenue);
+        writer.write(objectMapper.writeValueAsString(row));
+        writer.write('\n');
+    }
+
+    private static List<OrderItem> shopItems(Order order, String shopId) {
+        List<OrderItem> items = new ArrayList<>();
+        if (order.getItems() != null) {
+            for (OrderItem item : order.getItems()) {
+                if (shopId.equals(item.getShop_id())) {
+                    items.add(item);
+                }
+            }
+        }
+        return items;
+    }
+
+    private static long lineRevenue(OrderItem item) {
+        if (item.getPrice() == null || item.getQuantity() == null) {
+            return 0L;
+        }
+        return item.getPrice().getAmount() * item.getQuantity();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
@@ -0,0 +1,183 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Chống tạo đơn trùng theo header Idempotency-Key, dùng Redis nên đúng trên nhiều node.
+ * Request đầu tiên giữ key bằng SET NX PX (trạng thái đang xử lý) rồi ghi kết quả vào key;
+ * request lặp lại cùng key nhận lại kết quả cũ, request trùng đang chạy song song thì chờ kết quả.
+ * Key lưu kèm dấu vân tay (hash) của nội dung request: dùng lại key với nội dung khác sẽ bị từ chối.
+ * Trong lúc action chạy, TTL của key đang giữ được gia hạn định kỳ; kết quả chỉ được ghi (compare-and-set)
+ * khi key vẫn là của lần giữ này.
+ */
+@Service
+public class OrderIdempotencyService {
+
+    private static final String KEY_PREFIX = "idem:order:";
+    private static final String IN_FLIGHT_PREFIX = "PENDING:";
+    private static final String DONE_PREFIX = "DONE:";
+    private static final long POLL_INTERVAL_MS = 100;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Thời gian giữ key khi đang xử lý; hết hạn thì request khác được phép thử lại
+    @Value("${orders.idempotency.in-flight-ttl-ms:30000}")
+    private long inFlightTtlMs;
+
+    // Thời gian nhớ kết quả để trả lại cho các lần gửi lại
+    @Value("${orders.idempotency.result-ttl-hours:24}")
+    private long resultTtlHours;
+
+    private final DefaultRedisScript<Long> compareAndDeleteScript = new DefaultRedisScript<>();
+    private final DefaultRedisScript<Long> compareAndSetScript = new DefaultRedisScript<>();
+    private final DefaultRedisScript<Long> compareAndExpireScript = new DefaultRedisScript<>();
+
+    // Gia hạn TTL cho các key đang xử lý
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("idempotency-heartbeat").factory());
+
+    public OrderIdempotencyService() {
+        compareAndDeleteScript.setScriptSource(
+                new ResourceScriptSource(new ClassPathResource("redis/compare_and_delete.lua")));
+        compareAndDeleteScript.setResultType(Long.class);
+        compareAndSetScript.setScriptSource(
+                new ResourceScriptSource(new ClassPathResource("redis/compare_and_set.lua")));
+        compareAndSetScript.setResultType(Long.class);
+        compareAndExpireScript.setScriptSource(
+                new ResourceScriptSource(new ClassPathResource("redis/compare_and_expire.lua")));
+        compareAndExpireScript.setResultType(Long.class);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+    }
+
+    /**
+     * Chạy action một lần duy nhất cho mỗi (customerId, idempotencyKey) và trả về kết quả của nó.
+     * request là nội dung request dùng để tính dấu vân tay.
+     */
+    public String execute(String customerId, String idempotencyKey, Object request, Supplier<String> action) {
+        String key = KEY_PREFIX + customerId + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+        // Giá trị giữ key: PENDING:{token}:{fingerprint}, token riêng cho mỗi lần giữ
+        String inFlight = IN_FLIGHT_PREFIX + UUID.randomUUID() + ":" + fingerprint;
+        long deadline = System.currentTimeMillis() + inFlightTtlMs;
+        while (true) {
+            Boolean acquired = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(key, inFlight, Duration.ofMillis(inFlightTtlMs));
+            if (Boolean.TRUE.equals(acquired)) {
+                return runAndRecord(key, inFlight, fingerprint, action);
+            }
+
+            String value = stringRedisTemplate.opsForValue().get(key);
+            // value == null: request trước lỗi và đã xóa key, vòng sau sẽ giữ lại key
+            if (value == null) {
+                continue;
+            }
+            if (!fingerprint.equals(fingerprintOf(value))) {
+                throw new RuntimeException("Idempotency-Key đã được dùng cho một đơn hàng khác.");
+            }
+            if (value.startsWith(DONE_PREFIX)) {
+                return value.substring(DONE_PREFIX.length() + fingerprint.length() + 1);
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new RuntimeException("Đơn hàng với yêu cầu này đang được xử lý, vui lòng thử lại sau.");
+            }
+            sleep();
+        }
+    }
+
+    private String runAndRecord(String key, String inFlight, String fingerprint, Supplier<String> action) {
+        // Gia hạn key sau mỗi 1/3 TTL; key đã mất (hết hạn hoặc bị giữ lại) thì dừng gia hạn
+        AtomicBoolean lost = new AtomicBoolean(false);
+        long refreshMs = Math.max(inFlightTtlMs / 3, 1);
+        ScheduledFuture<?> refresh = heartbeat.scheduleAtFixedRate(() -> {
+            if (lost.get()) {
+                return;
+            }
+            try {
+                Long refreshed = stringRedisTemplate.execute(compareAndExpireScript, List.of(key), inFlight,
+                        String.valueOf(inFlightTtlMs));
+                if (refreshed == null || refreshed == 0) {
+                    lost.set(true);
+                }
+            } catch (Exception e) {
+                System.err.println("Error refreshing idempotency key " + key + ": " + e.getMessage());
+            }
+        }, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+
+        String result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            // Lỗi thì bỏ key để người dùng gửi lại được ngay, chỉ khi key vẫn là của lần giữ này
+            stringRedisTemplate.execute(compareAndDeleteScript, List.of(key), inFlight);
+            throw e;
+        } finally {
+            refresh.cancel(false);
+        }
+
+        Long recorded = stringRedisTemplate.execute(compareAndSetScript, List.of(key), inFlight,
+                DONE_PREFIX + fingerprint + ":" + result,
+                String.valueOf(Duration.ofHours(resultTtlHours).toMillis()));
+        if (recorded == null || recorded == 0) {
+            // Key đã hết hạn hoặc request khác đã giữ lại: không ghi đè, báo lỗi để người dùng kiểm tra đơn hàng
+            throw new RuntimeException(
+                    "Idempotency-Key đã hết hạn trong lúc xử lý đơn hàng, vui lòng kiểm tra lại danh sách đơn hàng.");
+        }
+        return result;
+    }
+
+    // PENDING:{token}:{fingerprint} hoặc DONE:{fingerprint}:{result}
+    private static String fingerprintOf(String value) {
+        if (value.startsWith(DONE_PREFIX)) {
+            int end = value.indexOf(':', DONE_PREFIX.length());
+            return end > 0 ? value.substring(DONE_PREFIX.length(), end) : "";
+        }
+        return value.substring(value.lastIndexOf(':') + 1);
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Cannot fingerprint order request: " + e.getMessage());
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for in-flight order request");
+        }
+    }
+}
@@ -1,20 +1,27 @@
 package dev.anhhoang.QTCSDLHD.services;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
+import dev.anhhoang.QTCSDLHD.dto.ChartBucketDTO;
+import dev.anhhoang.QTCSDLHD.dto.CursorPage;
 import dev.anhhoang.QTCSDLHD.dto.OrderDTO;
 import dev.anhhoang.QTCSDLHD.models.Order;
 
 public interface OrderService {
     List<Order> getOrdersBySeller(String sellerId, String status, String startDate, String endDate);
+    CursorPage<Order> getOrdersBySellerPage(String sellerId, String status, String startDate, String endDate,
+            String cursor, int limit);
     Order getOrderDetailForSeller(String orderId, String sellerId);
     Order updateOrderStatusForSeller(String orderId, String sellerId, String newStatus);
     Map<String, Object> getOrderStatisticsBySeller(String sellerId);
-    List<Map<String, Object>> getOrderChartDataBySeller(String sellerId, String period);
+    List<ChartBucketDTO> getOrderChartDataBySeller(String sellerId, String period);
+    List<ChartBucketDTO> getOrderChartDataBySeller(String sellerId, LocalDateTime from, LocalDateTime to, String granularity);
 
     // Thêm các phương thức cho buyer
     List<OrderDTO> getOrdersByCustomer(String customerId, String status);
+    CursorPage<OrderDTO> getOrdersByCustomerPage(String customerId, String status, String cursor, int limit);
     OrderDTO getOrderDetailForCustomer(String orderId, String customerId);
 
     boolean confirmOrderDelivered(String orderId, String customerId);
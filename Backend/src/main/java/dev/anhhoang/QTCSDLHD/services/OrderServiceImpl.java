@@ -2,26 +2,28 @@ package dev.anhhoang.QTCSDLHD.services;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 
+import dev.anhhoang.QTCSDLHD.dto.ChartBucketDTO;
+import dev.anhhoang.QTCSDLHD.dto.CursorPage;
 import dev.anhhoang.QTCSDLHD.dto.OrderDTO;
 import dev.anhhoang.QTCSDLHD.dto.OrderItemDTO;
 import dev.anhhoang.QTCSDLHD.models.Order;
 import dev.anhhoang.QTCSDLHD.models.OrderItem;
 import dev.anhhoang.QTCSDLHD.models.Product;
 import dev.anhhoang.QTCSDLHD.models.User;
+import dev.anhhoang.QTCSDLHD.repositories.OrderCursor;
 import dev.anhhoang.QTCSDLHD.repositories.OrderRepository;
 import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
 import dev.anhhoang.QTCSDLHD.repositories.UserRepository;
@@ -38,125 +40,79 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SellerStatsService sellerStatsService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private SellerLeaderboardService sellerLeaderboardService;
+
+    @Autowired
+    private SellerChartService sellerChartService;
+
+    // Số đơn đã lưu trữ tối đa trả về trong danh sách đơn không phân trang của customer
+    @Value("${orders.archive.customer-history-limit:100}")
+    private int archivedHistoryLimit;
+
     @Override
     public boolean cancelOrderByCustomer(String orderId, String customerId) {
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
-        if (orderOpt.isEmpty()) {
-            return false;
-        }
-        Order order = orderOpt.get();
-        // Check ownership and status
-        String status = order.getStatus();
-        if (!order.getCustomer_id().equals(customerId) || !("PENDING".equalsIgnoreCase(status) || "CONFIRMED".equalsIgnoreCase(status))) {
+        // Chỉ hủy được đơn của chính customer, khi đơn đang PENDING hoặc CONFIRMED
+        Criteria guard = Criteria.where("customer_id").is(customerId)
+                .and("status").regex("^(PENDING|CONFIRMED)$", "i");
+        Order previous = inventoryService.cancelAndRestoreStock(orderId, guard);
+        if (previous == null) {
             return false;
         }
-        // Restore stock for each item
-        for (OrderItem item : order.getItems()) {
-            Optional<Product> productOpt = productRepository.findById(item.getProduct_id());
-            if (productOpt.isPresent()) {
-                Product product = productOpt.get();
-                product.setStock(product.getStock() + item.getQuantity());
-                productRepository.save(product);
-            }
-        }
-        // Update order status
-        order.setStatus("CANCELLED");
-        orderRepository.save(order);
+        recordStatusChange(previous, previous.getStatus(), "CANCELLED");
         return true;
     }
 
     @Override
     public List<Order> getOrdersBySeller(String sellerId, String status, String startDate, String endDate) {
-        // Lấy user để get shopId từ sellerProfile
-        Optional<User> userOpt = userRepository.findById(sellerId);
-        if (userOpt.isEmpty() || userOpt.get().getSellerProfile() == null) {
+        // Lấy shopId từ sellerProfile
+        String shopId = resolveShopId(sellerId);
+        if (shopId == null) {
             return new ArrayList<>();
         }
-        
-        String shopId = userOpt.get().getSellerProfile().getShopId();
-        
-        // Lấy tất cả orders
-        List<Order> allOrders = orderRepository.findAll();
-        
-        // Lấy tất cả products của shop này
-        List<Product> sellerProducts = productRepository.findByShopid(shopId);
-        
-        Set<String> sellerProductIds = sellerProducts.stream()
-                .map(Product::get_id)
-                .collect(Collectors.toSet());
-        
-        // Filter orders có chứa products của seller
-        List<Order> sellerOrders = allOrders.stream()
-                .filter(order -> {
-                    return order.getItems().stream()
-                            .anyMatch(item -> sellerProductIds.contains(item.getProduct_id()));
-                })
-                .collect(Collectors.toList());
-        
-        // Apply filters
-        if (status != null && !status.isEmpty()) {
-            sellerOrders = sellerOrders.stream()
-                    .filter(order -> status.equalsIgnoreCase(order.getStatus()))
-                    .collect(Collectors.toList());
-        }
-
-        if (startDate != null && !startDate.isEmpty()) {
-            LocalDate start = LocalDate.parse(startDate);
-            sellerOrders = sellerOrders.stream()
-                    .filter(order -> order.getCreated_at().toLocalDate().isAfter(start.minusDays(1)))
-                    .collect(Collectors.toList());
-        }
 
-        if (endDate != null && !endDate.isEmpty()) {
-            LocalDate end = LocalDate.parse(endDate);
-            sellerOrders = sellerOrders.stream()
-                    .filter(order -> order.getCreated_at().toLocalDate().isBefore(end.plusDays(1)))
-                    .collect(Collectors.toList());
-        }
+        // Lọc theo shop, status và khoảng ngày ngay trên MongoDB thay vì quét toàn bộ orders
+        LocalDateTime from = (startDate != null && !startDate.isEmpty())
+                ? LocalDate.parse(startDate).atStartOfDay()
+                : null;
+        LocalDateTime to = (endDate != null && !endDate.isEmpty())
+                ? LocalDate.parse(endDate).plusDays(1).atStartOfDay()
+                : null;
 
-        // Sort by created_at descending
-        sellerOrders.sort((o1, o2) -> o2.getCreated_at().compareTo(o1.getCreated_at()));
-
-        return sellerOrders;
+        return orderRepository.findShopOrders(shopId, status, from, to);
     }
 
     @Override
     public Order getOrderDetailForSeller(String orderId, String sellerId) {
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
-        if (orderOpt.isEmpty()) {
+        String shopId = resolveShopId(sellerId);
+        if (shopId == null) {
             return null;
         }
-        
-        Order order = orderOpt.get();
-        
-        // Lấy user để get shopId từ sellerProfile
-        Optional<User> userOpt = userRepository.findById(sellerId);
-        if (userOpt.isEmpty() || userOpt.get().getSellerProfile() == null) {
-            return null;
-        }
-        
-        String shopId = userOpt.get().getSellerProfile().getShopId();
-        
-        // Kiểm tra xem order có chứa products của seller không
-        List<Product> sellerProducts = productRepository.findByShopid(shopId);
-        Set<String> sellerProductIds = sellerProducts.stream()
-                .map(Product::get_id)
-                .collect(Collectors.toSet());
-        
-        boolean hasSellerProducts = order.getItems().stream()
-                .anyMatch(item -> sellerProductIds.contains(item.getProduct_id()));
-        
-        if (!hasSellerProducts) {
-            return null; // Seller không có quyền xem order này
-        }
-        
-        return order;
+        // Seller chỉ thấy đơn có shop của mình, không cần tải danh sách sản phẩm của shop
+        return orderRepository.findByIdAndShopId(orderId, shopId)
+                .or(() -> orderRepository.findArchivedShopOrder(orderId, shopId))
+                .orElse(null);
     }
 
     @Override
     public Order updateOrderStatusForSeller(String orderId, String sellerId, String newStatus) {
-        Order order = getOrderDetailForSeller(orderId, sellerId);
+        String shopId = resolveShopId(sellerId);
+        if (shopId == null) {
+            return null;
+        }
+        // Chỉ đổi status đơn trong orders; đơn đã chuyển sang orders_archive thì không cho sửa,
+        // tránh save đơn lưu trữ ngược vào orders trong khi bản archive vẫn còn
+        Order order = orderRepository.findByIdAndShopId(orderId, shopId).orElse(null);
         if (order == null) {
+            if (orderRepository.findArchivedShopOrder(orderId, shopId).isPresent()) {
+                throw new RuntimeException("Archived orders cannot be updated");
+            }
             return null;
         }
 
@@ -166,315 +122,87 @@ public class OrderServiceImpl implements OrderService {
             throw new IllegalArgumentException("Invalid status: " + newStatus);
         }
 
-        // Nếu chuyển sang CANCELLED thì cộng lại số lượng sản phẩm
-        if ("CANCELLED".equalsIgnoreCase(newStatus) && !"CANCELLED".equalsIgnoreCase(order.getStatus())) {
-            for (OrderItem item : order.getItems()) {
-                Optional<Product> productOpt = productRepository.findById(item.getProduct_id());
-                if (productOpt.isPresent()) {
-                    Product product = productOpt.get();
-                    product.setStock(product.getStock() + item.getQuantity());
-                    productRepository.save(product);
-                }
+        // Nếu chuyển sang CANCELLED thì cộng lại số lượng sản phẩm (một lần duy nhất cho mỗi đơn)
+        if ("CANCELLED".equals(newStatus)) {
+            Order previous = inventoryService.cancelAndRestoreStock(orderId,
+                    Criteria.where("status").not().regex("^CANCELLED$", "i"));
+            if (previous == null) {
+                // Đơn đã được hủy và hoàn kho trước đó
+                return orderRepository.findById(orderId).orElse(null);
             }
+            recordStatusChange(previous, previous.getStatus(), newStatus);
+            return orderRepository.findById(orderId).orElse(null);
         }
 
+        // Chỉ đổi status nếu đơn chưa bị request khác đổi (ví dụ vừa bị hủy và hoàn kho)
+        Order previous = orderRepository.updateStatusIf(orderId, order.getStatus(), newStatus);
+        if (previous == null) {
+            throw new RuntimeException("Order status was changed by another request, please reload the order");
+        }
+        // Thống kê chỉ ghi khi chính request này chuyển status, theo đúng bản đơn mà findAndModify đã khớp
+        recordStatusChange(previous, previous.getStatus(), newStatus);
         order.setStatus(newStatus);
         order.setUpdated_at(LocalDateTime.now());
-
-        return orderRepository.save(order);
+        return order;
     }
 
     @Override
     public Map<String, Object> getOrderStatisticsBySeller(String sellerId) {
-        List<Order> sellerOrders = getOrdersBySeller(sellerId, null, null, null);
-        
-        Map<String, Object> statistics = new HashMap<>();
-        
-        // Tổng số orders
-        statistics.put("totalOrders", sellerOrders.size());
-        
-        // Số orders đã hoàn thành (DELIVERED)
-        long completedOrders = sellerOrders.stream()
-                .filter(order -> "DELIVERED".equalsIgnoreCase(order.getStatus()))
-                .count();
-        statistics.put("completedOrders", completedOrders);
-        
-        // Phân bố theo status (normalize thành uppercase)
-        Map<String, Long> statusDistribution = sellerOrders.stream()
-                .collect(Collectors.groupingBy(
-                    order -> order.getStatus().toUpperCase(), 
-                    Collectors.counting()
-                ));
-        statistics.put("statusDistribution", statusDistribution);
-        
-        // Lấy shopId để tính revenue
-        Optional<User> userOpt = userRepository.findById(sellerId);
-        if (userOpt.isEmpty() || userOpt.get().getSellerProfile() == null) {
-            statistics.put("totalRevenue", 0.0);
+        String shopId = resolveShopId(sellerId);
+        if (shopId == null) {
+            Map<String, Object> statistics = new HashMap<>();
+            statistics.put("totalOrders", 0);
+            statistics.put("completedOrders", 0L);
+            statistics.put("statusDistribution", Map.of());
+            statistics.put("totalRevenue", 0L);
             statistics.put("recentOrders", 0L);
             return statistics;
         }
-        
-        String shopId = userOpt.get().getSellerProfile().getShopId();
-        List<Product> sellerProducts = productRepository.findByShopid(shopId);
-        Set<String> sellerProductIds = sellerProducts.stream()
-                .map(Product::get_id)
-                .collect(Collectors.toSet());
-        
-        // Tổng doanh thu (chỉ tính từ đơn hàng đã giao thành công)
-        double totalRevenue = sellerOrders.stream()
-                .filter(order -> "DELIVERED".equalsIgnoreCase(order.getStatus())) // Chỉ tính đơn đã giao
-                .mapToDouble(order -> {
-                    return order.getItems().stream()
-                            .filter(item -> sellerProductIds.contains(item.getProduct_id()))
-                            .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                            .sum();
-                })
-                .sum();
-        statistics.put("totalRevenue", totalRevenue);
-        
-        // Orders trong 30 ngày qua
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-        long recentOrders = sellerOrders.stream()
-                .filter(order -> order.getCreated_at().isAfter(thirtyDaysAgo))
-                .count();
-        statistics.put("recentOrders", recentOrders);
-        
-        return statistics;
+        // Đọc từ bảng tổng hợp theo ngày thay vì tính lại trên toàn bộ đơn hàng
+        return sellerStatsService.getStatistics(shopId);
     }
 
     @Override
-    public List<Map<String, Object>> getOrderChartDataBySeller(String sellerId, String period) {
-        List<Order> sellerOrders = getOrdersBySeller(sellerId, null, null, null);
-        List<Map<String, Object>> chartData = new ArrayList<>();
-        
-        if ("monthly".equals(period)) {
-            // Group by months for the current year
-            Map<String, Map<String, Object>> monthlyData = new LinkedHashMap<>();
-            
-            // Initialize all months with 0 orders and revenue
-            String[] months = {"T1", "T2", "T3", "T4", "T5", "T6", "T7", "T8", "T9", "T10", "T11", "T12"};
-            for (String month : months) {
-                Map<String, Object> data = new HashMap<>();
-                data.put("name", month);
-                data.put("orders", 0);
-                data.put("completedOrders", 0);
-                data.put("cancelledOrders", 0);
-                data.put("revenue", 0.0);
-                monthlyData.put(month, data);
-            }
-            
-            // Get shopId để tính revenue
-            Optional<User> userOpt = userRepository.findById(sellerId);
-            Set<String> sellerProductIds = Set.of();
-            if (userOpt.isPresent() && userOpt.get().getSellerProfile() != null) {
-                String shopId = userOpt.get().getSellerProfile().getShopId();
-                List<Product> sellerProducts = productRepository.findByShopid(shopId);
-                sellerProductIds = sellerProducts.stream()
-                        .map(Product::get_id)
-                        .collect(Collectors.toSet());
-            }
-            
-            final Set<String> finalSellerProductIds = sellerProductIds;
-            
-            // Process actual orders
-            for (Order order : sellerOrders) {
-                int month = order.getCreated_at().getMonthValue();
-                String monthKey = "T" + month;
-                
-                Map<String, Object> monthData = monthlyData.get(monthKey);
-                if (monthData != null) {
-                    // Count all orders (not just delivered ones)
-                    int currentOrders = (Integer) monthData.get("orders");
-                    monthData.put("orders", currentOrders + 1);
-                    
-                    // Count completed orders (DELIVERED)
-                    if ("DELIVERED".equalsIgnoreCase(order.getStatus())) {
-                        int currentCompleted = (Integer) monthData.get("completedOrders");
-                        monthData.put("completedOrders", currentCompleted + 1);
-                        
-                        // Revenue only from delivered orders
-                        double orderRevenue = order.getItems().stream()
-                                .filter(item -> finalSellerProductIds.contains(item.getProduct_id()))
-                                .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                                .sum();
-                        
-                        double currentRevenue = (Double) monthData.get("revenue");
-                        monthData.put("revenue", currentRevenue + orderRevenue);
-                    }
-                    
-                    // Count cancelled orders
-                    if ("CANCELLED".equalsIgnoreCase(order.getStatus())) {
-                        int currentCancelled = (Integer) monthData.get("cancelledOrders");
-                        monthData.put("cancelledOrders", currentCancelled + 1);
-                    }
-                }
-            }
-            
-            chartData.addAll(monthlyData.values());
-            
-        } else if ("weekly".equals(period)) {
-            // Group by weeks for the last 12 weeks
-            Map<String, Map<String, Object>> weeklyData = new LinkedHashMap<>();
-            LocalDate now = LocalDate.now();
-            
-            // Initialize last 12 weeks
-            for (int i = 11; i >= 0; i--) {
-                LocalDate weekStart = now.minusWeeks(i).with(TemporalAdjusters.previousOrSame(java.time.DayOfWeek.MONDAY));
-                LocalDate weekEnd = weekStart.plusDays(6);
-                
-                // Format ngắn gọn: "T25/6-1/7"
-                String weekName = String.format("T%d/%d-%d/%d", 
-                    weekStart.getDayOfMonth(), weekStart.getMonthValue(),
-                    weekEnd.getDayOfMonth(), weekEnd.getMonthValue());
-                String weekKey = weekName;
-                
-                Map<String, Object> data = new HashMap<>();
-                data.put("name", weekName);
-                data.put("orders", 0);
-                data.put("completedOrders", 0);
-                data.put("cancelledOrders", 0);
-                data.put("revenue", 0.0);
-                data.put("weekStart", weekStart);
-                weeklyData.put(weekKey, data);
-            }
-            
-            // Get shopId để tính revenue
-            Optional<User> userOpt = userRepository.findById(sellerId);
-            Set<String> sellerProductIds = Set.of();
-            if (userOpt.isPresent() && userOpt.get().getSellerProfile() != null) {
-                String shopId = userOpt.get().getSellerProfile().getShopId();
-                List<Product> sellerProducts = productRepository.findByShopid(shopId);
-                sellerProductIds = sellerProducts.stream()
-                        .map(Product::get_id)
-                        .collect(Collectors.toSet());
-            }
-            
-            final Set<String> finalSellerProductIds = sellerProductIds;
-            
-            // Process actual orders
-            for (Order order : sellerOrders) {
-                LocalDate orderDate = order.getCreated_at().toLocalDate();
-                
-                // Find which week this order belongs to
-                for (Map.Entry<String, Map<String, Object>> weekEntry : weeklyData.entrySet()) {
-                    LocalDate weekStart = (LocalDate) weekEntry.getValue().get("weekStart");
-                    LocalDate weekEnd = weekStart.plusDays(6);
-                    
-                    if (!orderDate.isBefore(weekStart) && !orderDate.isAfter(weekEnd)) {
-                        Map<String, Object> weekData = weekEntry.getValue();
-                        
-                        // Count all orders (not just delivered ones)
-                        int currentOrders = (Integer) weekData.get("orders");
-                        weekData.put("orders", currentOrders + 1);
-                        
-                        // Count completed orders (DELIVERED)
-                        if ("DELIVERED".equalsIgnoreCase(order.getStatus())) {
-                            int currentCompleted = (Integer) weekData.get("completedOrders");
-                            weekData.put("completedOrders", currentCompleted + 1);
-                            
-                            // Revenue only from delivered orders
-                            double orderRevenue = order.getItems().stream()
-                                    .filter(item -> finalSellerProductIds.contains(item.getProduct_id()))
-                                    .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                                    .sum();
-                            
-                            double currentRevenue = (Double) weekData.get("revenue");
-                            weekData.put("revenue", currentRevenue + orderRevenue);
-                        }
-                        
-                        // Count cancelled orders
-                        if ("CANCELLED".equalsIgnoreCase(order.getStatus())) {
-                            int currentCancelled = (Integer) weekData.get("cancelledOrders");
-                            weekData.put("cancelledOrders", currentCancelled + 1);
-                        }
-                        break;
-                    }
-                }
-            }
-            
-            // Remove weekStart field before returning
-            for (Map<String, Object> weekData : weeklyData.values()) {
-                weekData.remove("weekStart");
-            }
-            
-            chartData.addAll(weeklyData.values());
-            
-        } else if ("yearly".equals(period)) {
-            // Group by years for the last 5 years
-            Map<String, Map<String, Object>> yearlyData = new LinkedHashMap<>();
-            int currentYear = LocalDate.now().getYear();
-            
-            // Initialize last 5 years
-            for (int i = 4; i >= 0; i--) {
-                int year = currentYear - i;
-                String yearKey = "Năm " + year;
-                
-                Map<String, Object> data = new HashMap<>();
-                data.put("name", yearKey);
-                data.put("orders", 0);
-                data.put("completedOrders", 0);
-                data.put("cancelledOrders", 0);
-                data.put("revenue", 0.0);
-                yearlyData.put(yearKey, data);
-            }
-            
-            // Get shopId để tính revenue
-            Optional<User> userOpt = userRepository.findById(sellerId);
-            Set<String> sellerProductIds = Set.of();
-            if (userOpt.isPresent() && userOpt.get().getSellerProfile() != null) {
-                String shopId = userOpt.get().getSellerProfile().getShopId();
-                List<Product> sellerProducts = productRepository.findByShopid(shopId);
-                sellerProductIds = sellerProducts.stream()
-                        .map(Product::get_id)
-                        .collect(Collectors.toSet());
-            }
-            
-            final Set<String> finalSellerProductIds = sellerProductIds;
-            
-            // Process actual orders
-            for (Order order : sellerOrders) {
-                int orderYear = order.getCreated_at().getYear();
-                String yearKey = "Năm " + orderYear;
-                
-                Map<String, Object> yearData = yearlyData.get(yearKey);
-                if (yearData != null) {
-                    // Count all orders (not just delivered ones)
-                    int currentOrders = (Integer) yearData.get("orders");
-                    yearData.put("orders", currentOrders + 1);
-                    
-                    // Count completed orders (DELIVERED)
-                    if ("DELIVERED".equalsIgnoreCase(order.getStatus())) {
-                        int currentCompleted = (Integer) yearData.get("completedOrders");
-                        yearData.put("completedOrders", currentCompleted + 1);
-                        
-                        // Revenue only from delivered orders
-                        double orderRevenue = order.getItems().stream()
-                                .filter(item -> finalSellerProductIds.contains(item.getProduct_id()))
-                                .mapToDouble(item -> item.getPrice() * item.getQuantity())
-                                .sum();
-                        
-                        double currentRevenue = (Double) yearData.get("revenue");
-                        yearData.put("revenue", currentRevenue + orderRevenue);
-                    }
-                    
-                    // Count cancelled orders
-                    if ("CANCELLED".equalsIgnoreCase(order.getStatus())) {
-                        int currentCancelled = (Integer) yearData.get("cancelledOrders");
-                        yearData.put("cancelledOrders", currentCancelled + 1);
-                    }
-                }
-            }
-            
-            chartData.addAll(yearlyData.values());
+    public List<ChartBucketDTO> getOrderChartDataBySeller(String sellerId, String period) {
+        String shopId = resolveShopId(sellerId);
+        if (shopId == null) {
+            return new ArrayList<>();
+        }
+        return sellerStatsService.getChartData(shopId, period);
+    }
+
+    @Override
+    public List<ChartBucketDTO> getOrderChartDataBySeller(String sellerId, LocalDateTime from, LocalDateTime to,
+            String granularity) {
+        SellerChartService.Granularity bucketSize = SellerChartService.Granularity.from(granularity);
+        String shopId = resolveShopId(sellerId);
+        if (shopId == null) {
+            return new ArrayList<>();
+        }
+        return sellerChartService.getChartData(shopId, from, to, bucketSize);
+    }
+
+    // Mỗi lần đơn đổi status: cập nhật thống kê theo ngày và bảng xếp hạng của shop
+    private void recordStatusChange(Order order, String oldStatus, String newStatus) {
+        sellerStatsService.recordStatusChange(order, oldStatus, newStatus);
+        sellerLeaderboardService.recordStatusChange(order, oldStatus, newStatus);
+    }
+
+    private String resolveShopId(String sellerId) {
+        Optional<User> userOpt = userRepository.findById(sellerId);
+        if (userOpt.isEmpty() || userOpt.get().getSellerProfile() == null) {
+            return null;
         }
-        
-        return chartData;
+        return userOpt.get().getSellerProfile().getShopId();
     }
     
     @Override
     public List<OrderDTO> getOrdersByCustomer(String customerId, String status) {
-        List<Order> customerOrders = orderRepository.findByCustomer_id(customerId);
+        List<Order> customerOrders = new ArrayList<>(orderRepository.findByCustomer_id(customerId));
+        // Đơn đã lưu trữ: chỉ lấy một số đơn mới nhất, xem thêm bằng API phân trang (cursor)
+        String archiveStatus = status == null || "ALL".equalsIgnoreCase(status) ? null : status;
+        customerOrders.addAll(orderRepository.findArchivedCustomerOrders(customerId, archiveStatus,
+                archivedHistoryLimit));
 
         if (status != null && !status.isEmpty() && !"ALL".equalsIgnoreCase(status)) {
             customerOrders = customerOrders.stream()
@@ -482,20 +210,70 @@ public class OrderServiceImpl implements OrderService {
                     .collect(Collectors.toList());
         }
 
-        List<String> allProductIds = customerOrders.stream()
+        List<OrderDTO> orderDTOs = toOrderDTOs(customerOrders);
+        orderDTOs.sort((o1, o2) -> o2.getCreated_at().compareTo(o1.getCreated_at()));
+        return orderDTOs;
+    }
+
+    @Override
+    public CursorPage<OrderDTO> getOrdersByCustomerPage(String customerId, String status, String cursor, int limit) {
+        String statusFilter = "ALL".equalsIgnoreCase(status) ? null : status;
+        List<Order> orders = orderRepository.findCustomerOrdersAfter(customerId, statusFilter,
+                cursor != null ? OrderCursor.decode(cursor) : null, limit);
+        CursorPage<Order> page = toPage(orders, limit);
+        return new CursorPage<>(toOrderDTOs(page.getItems()), page.getNextCursor());
+    }
+
+    @Override
+    public CursorPage<Order> getOrdersBySellerPage(String sellerId, String status, String startDate, String endDate,
+            String cursor, int limit) {
+        String shopId = resolveShopId(sellerId);
+        if (shopId == null) {
+            return new CursorPage<>(new ArrayList<>(), null);
+        }
+        LocalDateTime from = (startDate != null && !startDate.isEmpty())
+                ? LocalDate.parse(startDate).atStartOfDay()
+                : null;
+        LocalDateTime to = (endDate != null && !endDate.isEmpty())
+                ? LocalDate.parse(endDate).plusDays(1).atStartOfDay()
+                : null;
+        List<Order> orders = orderRepository.findShopOrdersAfter(shopId, status, from, to,
+                cursor != null ? OrderCursor.decode(cursor) : null, limit);
+        return toPage(orders, limit);
+    }
+
+    // Repository trả về tối đa limit + 1 đơn; đơn thừa cho biết còn trang tiếp theo
+    private CursorPage<Order> toPage(List<Order> orders, int limit) {
+        if (orders.size() <= limit) {
+            return new CursorPage<>(orders, null);
+        }
+        List<Order> items = new ArrayList<>(orders.subList(0, limit));
+        return new CursorPage<>(items, OrderCursor.encode(items.get(limit - 1)));
+    }
+
+    private List<OrderDTO> toOrderDTOs(List<Order> orders) {
+        // Item đã có snapshot sản phẩm thì không cần đọc products; chỉ các đơn cũ
+        // (tạo trước khi có snapshot) mới phải tra cứu, gom lại trong một findAllById
+        List<String> legacyProductIds = orders.stream()
+                .filter(order -> order.getItems() != null)
                 .flatMap(order -> order.getItems().stream())
+                .filter(item -> item.getProduct_name() == null)
                 .map(OrderItem::getProduct_id)
                 .distinct()
                 .collect(Collectors.toList());
 
-        Map<String, Product> productMap = productRepository.findAllById(allProductIds)
-                .stream()
-                .collect(Collectors.toMap(Product::get_id, p -> p));
+        Map<String, Product> productMap = legacyProductIds.isEmpty()
+                ? Map.of()
+                : productRepository.findAllById(legacyProductIds)
+                        .stream()
+                        .collect(Collectors.toMap(Product::get_id, p -> p));
 
         List<OrderDTO> orderDTOs = new ArrayList<>();
-        for (Order order : customerOrders) {
+        for (Order order : orders) {
             OrderDTO dto = new OrderDTO();
             dto.set_id(order.get_id());
+            dto.setCheckout_id(order.getCheckout_id());
+            dto.setShop_id(order.getShop_id());
             dto.setCustomer_id(order.getCustomer_id());
             dto.setFullName(order.getFullName());
             dto.setPhoneNumber(order.getPhoneNumber());
@@ -507,30 +285,38 @@ public class OrderServiceImpl implements OrderService {
             dto.setUpdated_at(order.getUpdated_at());
 
             List<OrderItemDTO> itemDTOs = new ArrayList<>();
-            for (OrderItem item : order.getItems()) {
-                OrderItemDTO itemDTO = new OrderItemDTO();
-                itemDTO.setProduct_id(item.getProduct_id());
-                itemDTO.setQuantity(item.getQuantity());
-                itemDTO.setPrice(item.getPrice());
-                itemDTO.setVoucherId(item.getVoucherId());
-                Product product = productMap.get(item.getProduct_id());
-                if (product != null) {
-                    itemDTO.setProduct_name(product.getName());
-                    itemDTO.setImage_url(product.getImage_url());
+            if (order.getItems() != null) {
+                for (OrderItem item : order.getItems()) {
+                    OrderItemDTO itemDTO = new OrderItemDTO();
+                    itemDTO.setProduct_id(item.getProduct_id());
+                    itemDTO.setQuantity(item.getQuantity());
+                    itemDTO.setPrice(item.getPrice());
+                    itemDTO.setVoucherId(item.getVoucherId());
+                    itemDTO.setShop_id(item.getShop_id());
+                    itemDTO.setShop_name(item.getShop_name());
+                    if (item.getProduct_name() != null) {
+                        itemDTO.setProduct_name(item.getProduct_name());
+                        itemDTO.setImage_url(item.getImage_url());
+                    } else {
+                        Product product = productMap.get(item.getProduct_id());
+                        if (product != null) {
+                            itemDTO.setProduct_name(product.getName());
+                            itemDTO.setImage_url(product.getImage_url());
+                        }
+                    }
+                    itemDTOs.add(itemDTO);
                 }
-                itemDTOs.add(itemDTO);
             }
             dto.setItems(itemDTOs);
             orderDTOs.add(dto);
         }
-
-        orderDTOs.sort((o1, o2) -> o2.getCreated_at().compareTo(o1.getCreated_at()));
         return orderDTOs;
     }
     
     @Override
     public OrderDTO getOrderDetailForCustomer(String orderId, String customerId) {
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
+        Optional<Order> orderOpt = orderRepository.findById(orderId)
+                .or(() -> orderRepository.findArchivedById(orderId));
         if (orderOpt.isEmpty()) {
             return null;
         }
@@ -539,38 +325,7 @@ public class OrderServiceImpl implements OrderService {
             return null;
         }
         // Build OrderDTO giống như getOrdersByCustomer
-        OrderDTO dto = new OrderDTO();
-        dto.set_id(order.get_id());
-        dto.setCustomer_id(order.getCustomer_id());
-        dto.setFullName(order.getFullName());
-        dto.setPhoneNumber(order.getPhoneNumber());
-        dto.setShipping_address(order.getShipping_address());
-        dto.setPayment_method(order.getPayment_method());
-        dto.setStatus(order.getStatus() != null ? order.getStatus().toUpperCase() : null);
-        dto.setTotal(order.getTotal());
-        dto.setCreated_at(order.getCreated_at());
-        dto.setUpdated_at(order.getUpdated_at());
-        // Map items to OrderItemDTO, lấy product_name, image_url
-        List<OrderItemDTO> itemDTOs = new ArrayList<>();
-        if (order.getItems() != null) {
-            for (var item : order.getItems()) {
-                OrderItemDTO itemDTO = new OrderItemDTO();
-                itemDTO.setProduct_id(item.getProduct_id());
-                itemDTO.setQuantity(item.getQuantity());
-                itemDTO.setPrice(item.getPrice());
-                itemDTO.setVoucherId(item.getVoucherId());
-                // Lấy thông tin sản phẩm
-                Optional<Product> productOpt = productRepository.findById(item.getProduct_id());
-                if (productOpt.isPresent()) {
-                    Product product = productOpt.get();
-                    itemDTO.setProduct_name(product.getName());
-                    itemDTO.setImage_url(product.getImage_url());
-                }
-                itemDTOs.add(itemDTO);
-            }
-        }
-        dto.setItems(itemDTOs);
-        return dto;
+        return toOrderDTOs(List.of(order)).get(0);
     }
 
     @Override
@@ -580,9 +335,12 @@ public class OrderServiceImpl implements OrderService {
         Order order = orderOpt.get();
         if (!customerId.equals(order.getCustomer_id())) return false;
         if (!"SHIPPING".equalsIgnoreCase(order.getStatus())) return false;
-        order.setStatus("DELIVERED");
-        order.setUpdated_at(LocalDateTime.now());
-        orderRepository.save(order);
+        // Seller chuyển SHIPPING -> DELIVERED cùng lúc thì chỉ một bên khớp và ghi doanh thu
+        Order previous = orderRepository.updateStatusIf(orderId, order.getStatus(), "DELIVERED");
+        if (previous == null) {
+            return false;
+        }
+        recordStatusChange(previous, previous.getStatus(), "DELIVERED");
         return true;
     }
 }
@@ -0,0 +1,64 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import dev.anhhoang.QTCSDLHD.models.OrderItem;
+import dev.anhhoang.QTCSDLHD.models.OutboxEvent;
+
+/**
+ * Ghi sự kiện hành vi (mua / xem sản phẩm) vào collection outbox thay vì gọi Neo4j trực tiếp.
+ * OutboxRelayJob sẽ đẩy các sự kiện sang Neo4j theo batch ở nền.
+ */
+@Service
+public class OutboxService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Ghi sự kiện mua của một lượt checkout. _id là checkoutId:vị trí item và chỉ ghi khi chưa có
+     * ($setOnInsert), nên gọi lại sau khi lỗi giữa chừng không tạo sự kiện trùng
+     */
+    public void publishPurchases(String customerId, String checkoutId, List<OrderItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxEvent.class);
+        for (int i = 0; i < items.size(); i++) {
+            OrderItem item = items.get(i);
+            bulkOps.upsert(Query.query(Criteria.where("_id").is(checkoutId + ":" + i)), new Update()
+                    .setOnInsert("type", OutboxEvent.PRODUCT_PURCHASED)
+                    .setOnInsert("user_id", customerId)
+                    .setOnInsert("product_id", item.getProduct_id())
+                    .setOnInsert("quantity", item.getQuantity())
+                    .setOnInsert("attempts", 0)
+                    .setOnInsert("created_at", now)
+                    .setOnInsert("next_attempt_at", now));
+        }
+        bulkOps.execute();
+    }
+
+    public void publishView(String userId, String productId) {
+        mongoTemplate.insert(newEvent(OutboxEvent.PRODUCT_VIEWED, userId, productId, LocalDateTime.now()));
+    }
+
+    private static OutboxEvent newEvent(String type, String userId, String productId, LocalDateTime now) {
+        OutboxEvent event = new OutboxEvent();
+        event.setType(type);
+        event.setUser_id(userId);
+        event.setProduct_id(productId);
+        event.setCreated_at(now);
+        event.setNext_attempt_at(now);
+        return event;
+    }
+}
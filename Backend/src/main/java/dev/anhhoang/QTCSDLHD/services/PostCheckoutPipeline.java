@@ -0,0 +1,139 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import dev.anhhoang.QTCSDLHD.models.PostCheckoutDeadLetter;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Chạy các việc phụ sau khi đơn đã được lưu (cập nhật cache, thống kê shop, dọn giỏ hàng)
+ * trên virtual thread, để response tạo đơn trả về ngay khi đơn đã vào MongoDB.
+ * Các lượt checkout của cùng một khách chạy tuần tự theo thứ tự gửi; mỗi bước được thử lại
+ * với backoff, hết số lần thử thì ghi vào collection post_checkout_dead_letters.
+ */
+@Service
+public class PostCheckoutPipeline {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${checkout.pipeline.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${checkout.pipeline.retry-backoff-ms:200}")
+    private long retryBackoffMs;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Việc cuối cùng đang chờ/chạy của từng khách, việc mới nối tiếp sau nó
+    private final Map<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final AtomicLong completedSteps = new AtomicLong();
+    private final AtomicLong retriedSteps = new AtomicLong();
+    private final AtomicLong deadLetters = new AtomicLong();
+
+    /**
+     * Một bước xử lý; nên idempotent vì có thể được chạy lại
+     */
+    public record Step(String name, Runnable action) {
+    }
+
+    /**
+     * Đưa các bước của một lượt checkout vào hàng đợi của khách hàng
+     */
+    public CompletableFuture<Void> submit(String customerId, String checkoutId, List<Step> steps) {
+        CompletableFuture<Void> next = tails.compute(customerId, (key, tail) -> {
+            CompletableFuture<Void> previous = tail != null ? tail : CompletableFuture.completedFuture(null);
+            return previous.thenRunAsync(() -> run(customerId, checkoutId, steps), executor);
+        });
+        // Đăng ký sau compute: việc đã xong thì callback chạy ngay, không được sửa map khi đang compute
+        next.whenComplete((ignored, error) -> tails.remove(customerId, next));
+        return next;
+    }
+
+    /**
+     * Thông số theo dõi pipeline
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("customersInFlight", tails.size());
+        stats.put("completedSteps", completedSteps.get());
+        stats.put("retriedSteps", retriedSteps.get());
+        stats.put("deadLetters", deadLetters.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Không ném lỗi ra ngoài để các lượt checkout sau của khách vẫn chạy
+    private void run(String customerId, String checkoutId, List<Step> steps) {
+        for (Step step : steps) {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    step.action().run();
+                    completedSteps.incrementAndGet();
+                    break;
+                } catch (RuntimeException e) {
+                    if (attempt >= maxAttempts) {
+                        deadLetter(customerId, checkoutId, step, attempt, e);
+                        break;
+                    }
+                    retriedSteps.incrementAndGet();
+                    if (!sleep(retryBackoffMs << (attempt - 1))) {
+                        deadLetter(customerId, checkoutId, step, attempt, e);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void deadLetter(String customerId, String checkoutId, Step step, int attempts, RuntimeException error) {
+        deadLetters.incrementAndGet();
+        System.err.println("Post-checkout step " + step.name() + " failed for checkout " + checkoutId + " after "
+                + attempts + " attempts: " + error.getMessage());
+        try {
+            PostCheckoutDeadLetter letter = new PostCheckoutDeadLetter();
+            letter.setCheckout_id(checkoutId);
+            letter.setCustomer_id(customerId);
+            letter.setStep(step.name());
+            letter.setAttempts(attempts);
+            letter.setError(error.getMessage());
+            letter.setCreated_at(LocalDateTime.now());
+            mongoTemplate.insert(letter);
+        } catch (Exception e) {
+            System.err.println("Error writing post-checkout dead letter for checkout " + checkoutId + ": "
+                    + e.getMessage());
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,14 +1,28 @@
 package dev.anhhoang.QTCSDLHD.services;
 
 import dev.anhhoang.QTCSDLHD.dto.ProductResponse;
+import dev.anhhoang.QTCSDLHD.models.Money;
 import dev.anhhoang.QTCSDLHD.models.Product;
 import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+import dev.anhhoang.QTCSDLHD.repositories.UserRepository;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.Optional;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -21,6 +35,9 @@ public class ProductCacheService {
     
     @Autowired
     private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
     
     private static final String PRODUCT_CACHE_KEY = "product:";
     private static final long CACHE_EXPIRATION_HOURS = 24; // Cache expire sau 24 giờ
@@ -61,9 +78,7 @@ public class ProductCacheService {
         // Nếu không có trong cache hoặc có lỗi, lấy từ database
         Optional<Product> productOpt = productRepository.findById(productId);
         if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            ProductResponse productResponse = new ProductResponse();
-            BeanUtils.copyProperties(product, productResponse);
+            ProductResponse productResponse = toResponses(List.of(productOpt.get())).get(0);
             
             // Cache sản phẩm
             cacheProduct(productResponse);
@@ -74,6 +89,73 @@ public class ProductCacheService {
         return null;
     }
     
+    /**
+     * Lấy nhiều sản phẩm cùng lúc: một MGET trên cache, sản phẩm chưa có thì đọc bằng một findAllById
+     * và cache lại. Sản phẩm không còn tồn tại sẽ không có trong kết quả.
+     */
+    public Map<String, ProductResponse> getProductsFromCache(List<String> productIds) {
+        Map<String, ProductResponse> products = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return products;
+        }
+        List<String> cacheKeys = productIds.stream().map(id -> PRODUCT_CACHE_KEY + id).toList();
+        List<Object> cached = null;
+        try {
+            cached = redisTemplate.opsForValue().multiGet(cacheKeys);
+        } catch (Exception e) {
+            System.err.println("Error retrieving products from cache: " + e.getMessage());
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < productIds.size(); i++) {
+            Object value = cached != null ? cached.get(i) : null;
+            ProductResponse product = null;
+            if (value instanceof java.util.LinkedHashMap) {
+                @SuppressWarnings("unchecked")
+                java.util.LinkedHashMap<String, Object> map = (java.util.LinkedHashMap<String, Object>) value;
+                product = convertMapToProductResponse(map);
+            } else if (value instanceof ProductResponse) {
+                product = (ProductResponse) value;
+            }
+            if (product != null) {
+                products.put(productIds.get(i), product);
+            } else {
+                missing.add(productIds.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            List<ProductResponse> loaded = toResponses(productRepository.findAllById(missing));
+            for (ProductResponse productResponse : loaded) {
+                products.put(productResponse.get_id(), productResponse);
+            }
+            cacheProducts(loaded);
+            System.out.println("Products cached from database: " + missing);
+        }
+        return products;
+    }
+    
+    // Chép sản phẩm đọc từ database sang ProductResponse kèm shop_id / shop_name như các đường đọc khác;
+    // sản phẩm chưa lưu shopname thì lấy tên shop từ seller profile, một query cho tất cả các shop
+    private List<ProductResponse> toResponses(List<Product> products) {
+        Set<String> shopIds = products.stream()
+                .filter(product -> !StringUtils.hasText(product.getShopname()) && product.getShopid() != null)
+                .map(Product::getShopid)
+                .collect(Collectors.toSet());
+        Map<String, String> shopNames = userRepository.findShopNames(shopIds);
+        List<ProductResponse> responses = new ArrayList<>();
+        for (Product product : products) {
+            ProductResponse productResponse = new ProductResponse();
+            BeanUtils.copyProperties(product, productResponse);
+            productResponse.setShop_id(product.getShopid());
+            productResponse.setShop_name(StringUtils.hasText(product.getShopname())
+                    ? product.getShopname()
+                    : shopNames.get(product.getShopid()));
+            responses.add(productResponse);
+        }
+        return responses;
+    }
+
     /**
      * Convert LinkedHashMap to ProductResponse
      */
@@ -84,12 +166,18 @@ public class ProductCacheService {
             product.set_id((String) map.get("_id"));
             product.setName((String) map.get("name"));
             product.setDescription((String) map.get("description"));
-            product.setPrice(((Number) map.get("price")).doubleValue());
-            product.setQuantity(((Number) map.get("quantity")).intValue());
+            product.setPrice(Money.of((Number) map.get("price")));
+            // Bản ghi sản phẩm trong cache không có quantity (số lượng nằm trong giỏ hàng)
+            if (map.get("quantity") != null) {
+                product.setQuantity(((Number) map.get("quantity")).intValue());
+            }
             product.setImage_url((String) map.get("image_url"));
             product.setCategory((String) map.get("category"));
             product.setShop_id((String) map.get("shop_id"));
             product.setShop_name((String) map.get("shop_name"));
+            if (map.get("flash_sale") != null) {
+                product.setFlash_sale((Boolean) map.get("flash_sale"));
+            }
             
             // Handle stock field
             if (map.get("stock") != null) {
@@ -146,6 +234,26 @@ public class ProductCacheService {
         redisTemplate.opsForValue().set(cacheKey, product, CACHE_EXPIRATION_HOURS, TimeUnit.HOURS);
     }
     
+    /**
+     * Cache nhiều sản phẩm bằng một pipeline (một round trip)
+     */
+    public void cacheProducts(Collection<ProductResponse> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> keySerializer = redisTemplate.getStringSerializer();
+        @SuppressWarnings("unchecked")
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        Expiration expiration = Expiration.from(CACHE_EXPIRATION_HOURS, TimeUnit.HOURS);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (ProductResponse product : products) {
+                connection.stringCommands().set(keySerializer.serialize(PRODUCT_CACHE_KEY + product.get_id()),
+                        valueSerializer.serialize(product), expiration, RedisStringCommands.SetOption.upsert());
+            }
+            return null;
+        });
+    }
+    
     /**
      * Xóa sản phẩm khỏi cache (khi sản phẩm được cập nhật)
      */
@@ -175,6 +283,21 @@ public class ProductCacheService {
      * Cập nhật stock của sản phẩm trong cache
      */
     public void updateProductStockInCache(String productId, int newStock) {
+        updateCachedProduct(productId, product -> product.setStock(newStock));
+        System.out.println("Updated stock for product " + productId + " in product cache: " + newStock);
+    }
+
+    /**
+     * Cập nhật trạng thái flash sale (và stock tương ứng) của sản phẩm trong cache
+     */
+    public void updateFlashSaleInCache(String productId, boolean flashSale, int stock) {
+        updateCachedProduct(productId, product -> {
+            product.setFlash_sale(flashSale);
+            product.setStock(stock);
+        });
+    }
+
+    private void updateCachedProduct(String productId, java.util.function.Consumer<ProductResponse> change) {
         String cacheKey = PRODUCT_CACHE_KEY + productId;
         
         try {
@@ -193,16 +316,14 @@ public class ProductCacheService {
                 }
                 
                 if (product != null) {
-                    // Cập nhật stock mới
-                    product.setStock(newStock);
+                    change.accept(product);
                     
                     // Lưu lại vào cache
                     redisTemplate.opsForValue().set(cacheKey, product, CACHE_EXPIRATION_HOURS, TimeUnit.HOURS);
-                    System.out.println("Updated stock for product " + productId + " in product cache: " + newStock);
                 }
             }
         } catch (Exception e) {
-            System.err.println("Error updating product stock in cache: " + e.getMessage());
+            System.err.println("Error updating product " + productId + " in cache: " + e.getMessage());
         }
     }
 }
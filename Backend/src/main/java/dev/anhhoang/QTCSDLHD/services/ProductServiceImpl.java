@@ -25,6 +25,12 @@ public class ProductServiceImpl implements ProductService {
     @Autowired
     private Neo4jClient neo4jClient;
 
+    @Autowired
+    private InventoryReservationService reservationService;
+
+    @Autowired
+    private FlashSaleService flashSaleService;
+
     @Override
     public List<ProductResponse> getAllProducts(String sort) {
         Sort sortOrder = createSortOrder(sort);
@@ -90,9 +96,29 @@ public class ProductServiceImpl implements ProductService {
             purchaseCountMap.put((String) row.get("pid"), ((Number) row.get("purchaseCount")).intValue());
         }
 
+        // Hàng đang được giữ cho các lượt checkout không còn bán được
+        Map<String, Integer> reservedMap;
+        try {
+            reservedMap = reservationService.getReservedQuantities(productIds);
+        } catch (Exception e) {
+            System.err.println("Error reading stock reservations: " + e.getMessage());
+            reservedMap = Map.of();
+        }
+        Map<String, Integer> reserved = reservedMap;
+
+        // Sản phẩm đang flash sale: stock chính xác nằm trên Redis
+        try {
+            flashSaleService.applyLiveStock(products);
+        } catch (Exception e) {
+            System.err.println("Error reading flash sale stock: " + e.getMessage());
+        }
+
         return products.stream().map(product -> {
             ProductResponse dto = new ProductResponse();
             BeanUtils.copyProperties(product, dto);
+            if (product.getStock() != null) {
+                dto.setStock(Math.max(0, product.getStock() - reserved.getOrDefault(product.get_id(), 0)));
+            }
             dto.setShop_name(product.getShopname());
             dto.setPurchaseCount(purchaseCountMap.getOrDefault(product.get_id(), 0));
             // Note: viewed status is not available here, it's specific to a user context
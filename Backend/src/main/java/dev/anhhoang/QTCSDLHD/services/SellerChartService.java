@@ -0,0 +1,222 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import dev.anhhoang.QTCSDLHD.dto.ChartBucketDTO;
+import dev.anhhoang.QTCSDLHD.models.Order;
+
+/**
+ * Biểu đồ doanh thu của shop trên khoảng thời gian tùy ý.
+ * Việc chia bucket được đẩy xuống MongoDB ($match/$unwind/$group + $dateTrunc),
+ * ứng dụng chỉ nhận về vài trăm dòng đã tổng hợp thay vì toàn bộ đơn hàng.
+ */
+@Service
+public class SellerChartService {
+
+    // Giới hạn số bucket để tránh yêu cầu hourly trên khoảng thời gian quá dài
+    private static final int MAX_BUCKETS = 2000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Đơn mới hơn mốc này không bao giờ nằm trong orders_archive
+    @Value("${orders.archive.after-days:180}")
+    private int archiveAfterDays;
+
+    public enum Granularity {
+        HOURLY("hour", ChronoUnit.HOURS, "HH:00 dd/MM"),
+        DAILY("day", ChronoUnit.DAYS, "dd/MM/yyyy"),
+        WEEKLY("week", ChronoUnit.WEEKS, null),
+        MONTHLY("month", ChronoUnit.MONTHS, "MM/yyyy"),
+        YEARLY("year", ChronoUnit.YEARS, null);
+
+        private final String mongoUnit;
+        private final ChronoUnit step;
+        private final DateTimeFormatter labelFormat;
+
+        Granularity(String mongoUnit, ChronoUnit step, String labelPattern) {
+            this.mongoUnit = mongoUnit;
+            this.step = step;
+            this.labelFormat = labelPattern != null ? DateTimeFormatter.ofPattern(labelPattern) : null;
+        }
+
+        public static Granularity from(String value) {
+            if (value == null || value.isEmpty()) {
+                return DAILY;
+            }
+            switch (value.toLowerCase()) {
+                case "hour":
+                case "hourly":
+                    return HOURLY;
+                case "day":
+                case "daily":
+                    return DAILY;
+                case "week":
+                case "weekly":
+                    return WEEKLY;
+                case "month":
+                case "monthly":
+                    return MONTHLY;
+                case "year":
+                case "yearly":
+                    return YEARLY;
+                default:
+                    throw new IllegalArgumentException("Invalid granularity: " + value);
+            }
+        }
+    }
+
+    /**
+     * Kết quả một bucket trả về từ pipeline
+     */
+    public static class BucketRow {
+        @Id
+        private LocalDateTime bucketStart;
+        private int orders;
+        private int completedOrders;
+        private int cancelledOrders;
+        private long revenue;
+
+        public LocalDateTime getBucketStart() { return bucketStart; }
+        public void setBucketStart(LocalDateTime bucketStart) { this.bucketStart = bucketStart; }
+
+        public int getOrders() { return orders; }
+        public void setOrders(int orders) { this.orders = orders; }
+
+        public int getCompletedOrders() { return completedOrders; }
+        public void setCompletedOrders(int completedOrders) { this.completedOrders = completedOrders; }
+
+        public int getCancelledOrders() { return cancelledOrders; }
+        public void setCancelledOrders(int cancelledOrders) { this.cancelledOrders = cancelledOrders; }
+
+        public long getRevenue() { return revenue; }
+        public void setRevenue(long revenue) { this.revenue = revenue; }
+    }
+
+    /**
+     * Dữ liệu biểu đồ của shop trong [from, to), chia bucket theo granularity.
+     * Các bucket không có đơn hàng vẫn được trả về với giá trị 0.
+     */
+    public List<ChartBucketDTO> getChartData(String shopId, LocalDateTime from, LocalDateTime to, Granularity granularity) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        LocalDateTime firstBucket = truncate(from, granularity);
+        if (granularity.step.between(firstBucket, to) > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Time range too large for granularity " + granularity.name().toLowerCase());
+        }
+
+        Map<LocalDateTime, BucketRow> rows = new HashMap<>();
+        for (BucketRow row : aggregate(shopId, from, to, granularity)) {
+            rows.put(row.getBucketStart(), row);
+        }
+
+        List<ChartBucketDTO> chartData = new ArrayList<>();
+        for (LocalDateTime bucket = firstBucket; bucket.isBefore(to); bucket = bucket.plus(1, granularity.step)) {
+            ChartBucketDTO dto = new ChartBucketDTO(label(bucket, granularity), bucket);
+            BucketRow row = rows.get(bucket);
+            if (row != null) {
+                dto.setOrders(row.getOrders());
+                dto.setCompletedOrders(row.getCompletedOrders());
+                dto.setCancelledOrders(row.getCancelledOrders());
+                dto.setRevenue(row.getRevenue());
+            }
+            chartData.add(dto);
+        }
+        return chartData;
+    }
+
+    private List<BucketRow> aggregate(String shopId, LocalDateTime from, LocalDateTime to, Granularity granularity) {
+        Criteria shopInRange = Criteria.where("shop_ids").is(shopId).and("created_at").gte(from).lt(to);
+
+        // Gom các item của shop về từng đơn hàng: doanh thu của shop trong đơn
+        AggregationOperation groupByOrder = context -> new Document("$group", new Document("_id", "$_id")
+                .append("created_at", new Document("$first", "$created_at"))
+                .append("status", new Document("$first", new Document("$toUpper", "$status")))
+                .append("revenue", new Document("$sum", new Document("$toLong", new Document("$round",
+                        List.of(new Document("$multiply", List.of("$items.price", "$items.quantity")), 0))))));
+
+        // Chia bucket theo thời gian, doanh thu chỉ tính từ đơn đã giao
+        Document bucketStart = new Document("date", "$created_at")
+                .append("unit", granularity.mongoUnit)
+                .append("timezone", ZoneId.systemDefault().getId());
+        if (granularity == Granularity.WEEKLY) {
+            bucketStart.append("startOfWeek", "monday");
+        }
+        Document delivered = new Document("$eq", List.of("$status", "DELIVERED"));
+        Document cancelled = new Document("$eq", List.of("$status", "CANCELLED"));
+        AggregationOperation groupByBucket = context -> new Document("$group",
+                new Document("_id", new Document("$dateTrunc", bucketStart))
+                        .append("orders", new Document("$sum", 1))
+                        .append("completedOrders", new Document("$sum", new Document("$cond", List.of(delivered, 1, 0))))
+                        .append("cancelledOrders", new Document("$sum", new Document("$cond", List.of(cancelled, 1, 0))))
+                        .append("revenue", new Document("$sum", new Document("$cond", List.of(delivered, "$revenue", 0)))));
+
+        List<AggregationOperation> operations = new ArrayList<>();
+        operations.add(Aggregation.match(shopInRange));
+        if (from.isBefore(LocalDateTime.now().minusDays(archiveAfterDays))) {
+            // Khoảng thời gian chạm tới dữ liệu đã lưu trữ: đọc thêm orders_archive
+            operations.add(UnionWithOperation.unionWith(Order.ARCHIVE_COLLECTION)
+                    .pipeline(Aggregation.match(shopInRange)));
+        }
+        operations.addAll(List.of(
+                Aggregation.unwind("items"),
+                Aggregation.match(Criteria.where("items.shop_id").is(shopId)),
+                groupByOrder,
+                groupByBucket,
+                Aggregation.sort(Sort.Direction.ASC, "_id")));
+
+        TypedAggregation<Order> aggregation = Aggregation.newAggregation(Order.class, operations)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        return mongoTemplate.aggregate(aggregation, BucketRow.class).getMappedResults();
+    }
+
+    private static LocalDateTime truncate(LocalDateTime time, Granularity granularity) {
+        switch (granularity) {
+            case HOURLY:
+                return time.truncatedTo(ChronoUnit.HOURS);
+            case DAILY:
+                return time.truncatedTo(ChronoUnit.DAYS);
+            case WEEKLY:
+                return time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTHLY:
+                return time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+            default:
+                return time.truncatedTo(ChronoUnit.DAYS).withDayOfYear(1);
+        }
+    }
+
+    private static String label(LocalDateTime bucket, Granularity granularity) {
+        if (granularity == Granularity.WEEKLY) {
+            return SellerStatsService.weekName(bucket.toLocalDate());
+        }
+        if (granularity == Granularity.YEARLY) {
+            return "Năm " + bucket.getYear();
+        }
+        return bucket.format(granularity.labelFormat);
+    }
+}
@@ -0,0 +1,201 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import dev.anhhoang.QTCSDLHD.dto.TopEntryDTO;
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.models.OrderItem;
+import dev.anhhoang.QTCSDLHD.models.Product;
+import dev.anhhoang.QTCSDLHD.models.User;
+import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+import dev.anhhoang.QTCSDLHD.repositories.UserRepository;
+
+/**
+ * Bảng xếp hạng top sản phẩm (theo số lượng bán) và top khách hàng (theo doanh thu)
+ * của từng shop, theo tháng / năm / toàn thời gian.
+ * Mỗi bảng là một sketch Space-Saving trên Redis sorted set, cập nhật khi đơn chuyển
+ * sang DELIVERED; đọc top K chỉ tốn O(K), không cần quét đơn hàng.
+ */
+@Service
+public class SellerLeaderboardService {
+
+    private static final String KEY_PREFIX = "top:";
+    private static final String DELIVERED = "DELIVERED";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Số phần tử mỗi sketch theo dõi; càng lớn so với K thì top K càng chính xác
+    @Value("${seller.leaderboard.capacity:100}")
+    private int capacity;
+
+    private final DefaultRedisScript<Long> spaceSavingScript = new DefaultRedisScript<>();
+
+    public SellerLeaderboardService() {
+        spaceSavingScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("redis/space_saving.lua")));
+        spaceSavingScript.setResultType(Long.class);
+    }
+
+    public enum Type {
+        PRODUCTS, CUSTOMERS;
+
+        public static Type from(String value) {
+            if (value == null || value.isEmpty() || "products".equalsIgnoreCase(value)) {
+                return PRODUCTS;
+            }
+            if ("customers".equalsIgnoreCase(value)) {
+                return CUSTOMERS;
+            }
+            throw new IllegalArgumentException("Invalid leaderboard type: " + value);
+        }
+    }
+
+    public enum Period {
+        MONTH(Duration.ofDays(400)),
+        YEAR(Duration.ofDays(3 * 366)),
+        ALL(Duration.ZERO);
+
+        private final Duration ttl;
+
+        Period(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public static Period from(String value) {
+            if (value == null || value.isEmpty()) {
+                return MONTH;
+            }
+            switch (value.toLowerCase()) {
+                case "month":
+                case "monthly":
+                    return MONTH;
+                case "year":
+                case "yearly":
+                    return YEAR;
+                case "all":
+                    return ALL;
+                default:
+                    throw new IllegalArgumentException("Invalid leaderboard period: " + value);
+            }
+        }
+
+        String bucket(LocalDate date) {
+            switch (this) {
+                case MONTH:
+                    return String.format("%d-%02d", date.getYear(), date.getMonthValue());
+                case YEAR:
+                    return String.valueOf(date.getYear());
+                default:
+                    return "all";
+            }
+        }
+    }
+
+    /**
+     * Cập nhật bảng xếp hạng khi đơn vào (hoặc rời) trạng thái DELIVERED
+     */
+    public void recordStatusChange(Order order, String oldStatus, String newStatus) {
+        boolean wasDelivered = DELIVERED.equalsIgnoreCase(oldStatus);
+        boolean isDelivered = DELIVERED.equalsIgnoreCase(newStatus);
+        if (wasDelivered == isDelivered || order.getShop_ids() == null || order.getCreated_at() == null) {
+            return;
+        }
+        int sign = isDelivered ? 1 : -1;
+        try {
+            for (String shopId : order.getShop_ids()) {
+                Map<String, Double> products = new LinkedHashMap<>();
+                for (OrderItem item : order.getItems()) {
+                    if (shopId.equals(item.getShop_id()) && item.getQuantity() != null) {
+                        products.merge(item.getProduct_id(), (double) item.getQuantity(), Double::sum);
+                    }
+                }
+                Map<String, Double> customers = Map.of(order.getCustomer_id(),
+                        (double) SellerStatsService.shopRevenue(order, shopId));
+                for (Period period : Period.values()) {
+                    String bucket = period.bucket(order.getCreated_at().toLocalDate());
+                    apply(key(shopId, Type.PRODUCTS, bucket), products, sign, period);
+                    apply(key(shopId, Type.CUSTOMERS, bucket), customers, sign, period);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error updating seller leaderboard for order " + order.get_id() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Top K sản phẩm / khách hàng của shop trong kỳ hiện tại
+     */
+    public List<TopEntryDTO> getTop(String shopId, Type type, Period period, int limit) {
+        String key = key(shopId, type, period.bucket(LocalDate.now()));
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .reverseRangeWithScores(key, 0, Math.min(limit, capacity) - 1);
+        if (tuples == null || tuples.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> ids = tuples.stream().map(ZSetOperations.TypedTuple::getValue).collect(Collectors.toList());
+        List<Object> errors = stringRedisTemplate.opsForHash().multiGet(key + ":err", new ArrayList<>(ids));
+        Map<String, String> names = names(type, ids);
+
+        List<TopEntryDTO> top = new ArrayList<>();
+        int i = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            Object error = errors.get(i++);
+            top.add(new TopEntryDTO(tuple.getValue(), names.get(tuple.getValue()),
+                    tuple.getScore() != null ? tuple.getScore() : 0.0,
+                    error != null ? Double.parseDouble(error.toString()) : 0.0));
+        }
+        return top;
+    }
+
+    private void apply(String key, Map<String, Double> weights, int sign, Period period) {
+        if (weights.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(capacity));
+        args.add(String.valueOf(period.ttl.toMillis()));
+        weights.forEach((member, weight) -> {
+            args.add(member);
+            args.add(String.valueOf(sign * weight));
+        });
+        stringRedisTemplate.execute(spaceSavingScript, List.of(key, key + ":err"), args.toArray());
+    }
+
+    private Map<String, String> names(Type type, List<String> ids) {
+        if (type == Type.PRODUCTS) {
+            return productRepository.findAllById(ids).stream()
+                    .filter(product -> product.getName() != null)
+                    .collect(Collectors.toMap(Product::get_id, Product::getName));
+        }
+        return userRepository.findAllById(ids).stream()
+                .filter(user -> user.getFullName() != null)
+                .collect(Collectors.toMap(User::getId, User::getFullName));
+    }
+
+    // Hash tag {shopId} giữ sorted set và hash sai số trên cùng slot khi dùng Redis Cluster
+    private static String key(String shopId, Type type, String bucket) {
+        return KEY_PREFIX + "{" + shopId + "}:" + type.name().toLowerCase() + ":" + bucket;
+    }
+}
@@ -0,0 +1,238 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import dev.anhhoang.QTCSDLHD.dto.ChartBucketDTO;
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.models.OrderItem;
+import dev.anhhoang.QTCSDLHD.models.SellerDailyStats;
+
+/**
+ * Duy trì bảng tổng hợp seller_daily_stats theo từng ngày của từng shop.
+ * Mỗi thay đổi đơn hàng chỉ là một lệnh $inc upsert, thống kê và biểu đồ
+ * chỉ cần đọc O(số ngày) document nhỏ thay vì toàn bộ đơn hàng.
+ */
+@Service
+public class SellerStatsService {
+
+    private static final String DELIVERED = "DELIVERED";
+    private static final String CANCELLED = "CANCELLED";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Cộng dồn số liệu khi đơn hàng mới được tạo
+     */
+    public void recordOrderCreated(Order order) {
+        if (order.getShop_ids() == null || order.getShop_ids().isEmpty()) {
+            return;
+        }
+        try {
+            String status = normalize(order.getStatus());
+            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SellerDailyStats.class);
+            for (String shopId : order.getShop_ids()) {
+                Update update = baseUpdate(shopId, order)
+                        .inc("orders", 1)
+                        .inc("status_counts." + status, 1);
+                applyStatusEffect(update, order, shopId, status, 1);
+                bulkOps.upsert(byId(shopId, order), update);
+            }
+            bulkOps.execute();
+        } catch (Exception e) {
+            System.err.println("Error recording seller stats for order " + order.get_id() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Chuyển số liệu giữa các bucket khi status đơn hàng thay đổi
+     * (bao gồm chuyển doanh thu vào/ra khi đơn vào/ra trạng thái DELIVERED)
+     */
+    public void recordStatusChange(Order order, String oldStatus, String newStatus) {
+        String from = normalize(oldStatus);
+        String to = normalize(newStatus);
+        if (from.equals(to) || order.getShop_ids() == null || order.getShop_ids().isEmpty()) {
+            return;
+        }
+        try {
+            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SellerDailyStats.class);
+            for (String shopId : order.getShop_ids()) {
+                Update update = baseUpdate(shopId, order)
+                        .inc("status_counts." + from, -1)
+                        .inc("status_counts." + to, 1);
+                applyStatusEffect(update, order, shopId, from, -1);
+                applyStatusEffect(update, order, shopId, to, 1);
+                bulkOps.upsert(byId(shopId, order), update);
+            }
+            bulkOps.execute();
+        } catch (Exception e) {
+            System.err.println("Error moving seller stats for order " + order.get_id() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Thống kê tổng quan của shop, cùng định dạng với /api/seller/revenue/overview
+     */
+    public Map<String, Object> getStatistics(String shopId) {
+        List<SellerDailyStats> days = findDays(shopId, null, null);
+        LocalDate recentFrom = LocalDate.now().minusDays(30);
+
+        long totalOrders = 0;
+        long completedOrders = 0;
+        long recentOrders = 0;
+        long totalRevenue = 0L;
+        Map<String, Long> statusDistribution = new HashMap<>();
+        for (SellerDailyStats day : days) {
+            totalOrders += day.getOrders();
+            completedOrders += day.getCompleted_orders();
+            totalRevenue += day.getRevenue();
+            if (!day.getDate().isBefore(recentFrom)) {
+                recentOrders += day.getOrders();
+            }
+            if (day.getStatus_counts() != null) {
+                day.getStatus_counts().forEach((status, count) -> {
+                    if (count != null && count != 0) {
+                        statusDistribution.merge(status, count, Long::sum);
+                    }
+                });
+            }
+        }
+        statusDistribution.values().removeIf(count -> count == 0);
+
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("totalOrders", totalOrders);
+        statistics.put("completedOrders", completedOrders);
+        statistics.put("statusDistribution", statusDistribution);
+        statistics.put("totalRevenue", totalRevenue);
+        statistics.put("recentOrders", recentOrders);
+        return statistics;
+    }
+
+    /**
+     * Dữ liệu biểu đồ theo tháng (năm hiện tại), tuần (12 tuần gần nhất) hoặc năm (5 năm gần nhất)
+     */
+    public List<ChartBucketDTO> getChartData(String shopId, String period) {
+        LocalDate today = LocalDate.now();
+        Map<String, ChartBucketDTO> buckets = new LinkedHashMap<>();
+        LocalDate from;
+        LocalDate to;
+
+        if ("monthly".equals(period)) {
+            for (int month = 1; month <= 12; month++) {
+                buckets.put("T" + month, new ChartBucketDTO("T" + month));
+            }
+            from = today.withDayOfYear(1);
+            to = from.plusYears(1);
+        } else if ("weekly".equals(period)) {
+            LocalDate currentWeekStart = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            for (int i = 11; i >= 0; i--) {
+                LocalDate weekStart = currentWeekStart.minusWeeks(i);
+                buckets.put(weekStart.toString(), new ChartBucketDTO(weekName(weekStart)));
+            }
+            from = currentWeekStart.minusWeeks(11);
+            to = currentWeekStart.plusWeeks(1);
+        } else if ("yearly".equals(period)) {
+            for (int i = 4; i >= 0; i--) {
+                String yearKey = "Năm " + (today.getYear() - i);
+                buckets.put(yearKey, new ChartBucketDTO(yearKey));
+            }
+            from = LocalDate.of(today.getYear() - 4, 1, 1);
+            to = LocalDate.of(today.getYear() + 1, 1, 1);
+        } else {
+            return new ArrayList<>();
+        }
+
+        for (SellerDailyStats day : findDays(shopId, from, to)) {
+            String key;
+            if ("monthly".equals(period)) {
+                key = "T" + day.getDate().getMonthValue();
+            } else if ("weekly".equals(period)) {
+                key = day.getDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toString();
+            } else {
+                key = "Năm " + day.getDate().getYear();
+            }
+            ChartBucketDTO bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.setOrders(bucket.getOrders() + (int) day.getOrders());
+                bucket.setCompletedOrders(bucket.getCompletedOrders() + (int) day.getCompleted_orders());
+                bucket.setCancelledOrders(bucket.getCancelledOrders() + (int) day.getCancelled_orders());
+                bucket.setRevenue(bucket.getRevenue() + day.getRevenue());
+            }
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    /**
+     * Doanh thu của một shop trong đơn hàng (chỉ tính các item thuộc shop đó)
+     */
+    public static long shopRevenue(Order order, String shopId) {
+        if (order.getItems() == null) {
+            return 0L;
+        }
+        long revenue = 0L;
+        for (OrderItem item : order.getItems()) {
+            if (shopId.equals(item.getShop_id()) && item.getPrice() != null && item.getQuantity() != null) {
+                revenue += item.getPrice().getAmount() * item.getQuantity();
+            }
+        }
+        return revenue;
+    }
+
+    public static String statsId(String shopId, LocalDate date) {
+        return shopId + ":" + date;
+    }
+
+    private List<SellerDailyStats> findDays(String shopId, LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where("shop_id").is(shopId);
+        if (from != null && to != null) {
+            criteria = criteria.and("date").gte(from).lt(to);
+        }
+        return mongoTemplate.find(new Query(criteria), SellerDailyStats.class);
+    }
+
+    private void applyStatusEffect(Update update, Order order, String shopId, String status, int sign) {
+        if (DELIVERED.equals(status)) {
+            update.inc("completed_orders", sign);
+            update.inc("revenue", sign * shopRevenue(order, shopId));
+        } else if (CANCELLED.equals(status)) {
+            update.inc("cancelled_orders", sign);
+        }
+    }
+
+    private Update baseUpdate(String shopId, Order order) {
+        return new Update()
+                .setOnInsert("shop_id", shopId)
+                .setOnInsert("date", order.getCreated_at().toLocalDate());
+    }
+
+    private Query byId(String shopId, Order order) {
+        return Query.query(Criteria.where("_id").is(statsId(shopId, order.getCreated_at().toLocalDate())));
+    }
+
+    private static String normalize(String status) {
+        return status == null ? "UNKNOWN" : status.toUpperCase();
+    }
+
+    static String weekName(LocalDate weekStart) {
+        LocalDate weekEnd = weekStart.plusDays(6);
+        // Format ngắn gọn: "T25/6-1/7"
+        return String.format("T%d/%d-%d/%d",
+                weekStart.getDayOfMonth(), weekStart.getMonthValue(),
+                weekEnd.getDayOfMonth(), weekEnd.getMonthValue());
+    }
+}
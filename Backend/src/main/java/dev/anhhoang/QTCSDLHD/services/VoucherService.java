@@ -1,13 +1,16 @@
 package dev.anhhoang.QTCSDLHD.services;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import dev.anhhoang.QTCSDLHD.models.Money;
 import dev.anhhoang.QTCSDLHD.models.Voucher;
 import dev.anhhoang.QTCSDLHD.repositories.VoucherRepository;
 
@@ -32,7 +35,7 @@ public class VoucherService {
         return voucherRepository.findByCode(code);
     }
 
-    public List<Voucher> getApplicableVouchersForProduct(String productId, BigDecimal productPrice) {
+    public List<Voucher> getApplicableVouchersForProduct(String productId, Money productPrice) {
         LocalDateTime now = LocalDateTime.now();
         List<Voucher> productVouchers = voucherRepository.findByProductIdsContaining(productId);
         
@@ -44,18 +47,18 @@ public class VoucherService {
                 .collect(java.util.stream.Collectors.toList());
     }
 
-    public boolean isVoucherValid(Voucher voucher, BigDecimal orderTotal) {
+    public boolean isVoucherValid(Voucher voucher, Money orderTotal) {
         LocalDateTime now = LocalDateTime.now();
         return (voucher.getStartDate() == null || !now.isBefore(voucher.getStartDate())) &&
                 (voucher.getEndDate() == null || !now.isAfter(voucher.getEndDate())) &&
-                (orderTotal.compareTo(voucher.getMinOrderValue()) >= 0);
+                (voucher.getMinOrderValue() == null || !orderTotal.isLessThan(voucher.getMinOrderValue()));
     }
 
-    public BigDecimal calculateDiscount(Voucher voucher, BigDecimal orderTotal) {
+    public Money calculateDiscount(Voucher voucher, Money orderTotal) {
         if (voucher.getDiscountType() == Voucher.DiscountType.PERCENTAGE) {
-            return orderTotal.multiply(voucher.getDiscountValue()).divide(BigDecimal.valueOf(100));
+            return orderTotal.percent(voucher.getDiscountValue()).min(orderTotal);
         } else {
-            return voucher.getDiscountValue().min(orderTotal);
+            return Money.of(voucher.getDiscountValue()).min(orderTotal);
         }
     }
 
@@ -89,6 +92,16 @@ public class VoucherService {
         return voucherRepository.findById(id).orElse(null);
     }
 
+    // Đọc nhiều voucher trong một query, key là voucher id
+    public Map<String, Voucher> getVouchersByIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        Map<String, Voucher> vouchers = new HashMap<>();
+        voucherRepository.findAllById(ids).forEach(voucher -> vouchers.put(voucher.getId(), voucher));
+        return vouchers;
+    }
+
     public boolean removeProductFromVoucher(String voucherId, String productId) {
         Optional<Voucher> optionalVoucher = voucherRepository.findById(voucherId);
         if (optionalVoucher.isPresent()) {
@@ -0,0 +1,21 @@
+-- Ghi số lượng một sản phẩm vào giỏ hàng cache và chỉ mục ngược, gia hạn TTL.
+-- Chỉ ghi khi giỏ hàng đang có trên Redis (giỏ hàng chỉ có một phần sẽ che mất các sản phẩm
+-- trong MongoDB), trừ khi được phép tạo giỏ mới
+-- KEYS[1] = cart:{customerId}, KEYS[2] = product_carts:{productId}
+-- ARGV[1] = customerId, ARGV[2] = productId, ARGV[3] = 'set' hoặc 'incr', ARGV[4] = số lượng,
+-- ARGV[5] = '1' nếu được tạo giỏ mới, ARGV[6] = TTL (giây)
+-- Trả về số lượng mới, hoặc nil nếu giỏ hàng không có trên Redis
+if ARGV[5] ~= '1' and redis.call('EXISTS', KEYS[1]) == 0 then
+  return false
+end
+local quantity
+if ARGV[3] == 'incr' then
+  quantity = redis.call('HINCRBY', KEYS[1], ARGV[2], ARGV[4])
+else
+  redis.call('HSET', KEYS[1], ARGV[2], ARGV[4])
+  quantity = tonumber(ARGV[4])
+end
+redis.call('EXPIRE', KEYS[1], ARGV[6])
+redis.call('SADD', KEYS[2], ARGV[1])
+redis.call('EXPIRE', KEYS[2], ARGV[6])
+return quantity
@@ -0,0 +1,6 @@
+-- Chỉ xóa key nếu giá trị vẫn là giá trị mình đã ghi (chưa bị request khác giữ lại)
+-- KEYS[1] = key, ARGV[1] = giá trị mong đợi
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+  return redis.call('DEL', KEYS[1])
+end
+return 0
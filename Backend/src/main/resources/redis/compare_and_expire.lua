@@ -0,0 +1,6 @@
+-- Gia hạn TTL nếu key vẫn giữ giá trị mình đã ghi
+-- KEYS[1] = key, ARGV[1] = giá trị mong đợi, ARGV[2] = TTL mới (ms)
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+  return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+end
+return 0
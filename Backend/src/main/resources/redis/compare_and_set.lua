@@ -0,0 +1,7 @@
+-- Chỉ ghi giá trị mới nếu key vẫn giữ giá trị mình đã ghi (chưa hết hạn / chưa bị request khác giữ lại)
+-- KEYS[1] = key, ARGV[1] = giá trị mong đợi, ARGV[2] = giá trị mới, ARGV[3] = TTL (ms)
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+  redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+  return 1
+end
+return 0
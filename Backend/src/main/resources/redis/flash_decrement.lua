@@ -0,0 +1,20 @@
+-- Trừ stock flash sale cho nhiều sản phẩm, tất cả hoặc không sản phẩm nào
+-- KEYS[1] = hash số lượng đã trừ chưa ghi xuống MongoDB (productId -> quantity)
+-- ARGV[1] = prefix key stock của sản phẩm, ARGV[2..] = cặp productId, quantity
+-- Trả về {0, stock mới...} nếu thành công; {vị trí} nếu thiếu hàng; {-vị trí} nếu sản phẩm không còn flash sale
+for i = 2, #ARGV, 2 do
+  local stock = redis.call('GET', ARGV[1] .. ARGV[i])
+  if not stock then
+    return {-(i / 2)}
+  end
+  if tonumber(stock) < tonumber(ARGV[i + 1]) then
+    return {i / 2}
+  end
+end
+
+local result = {0}
+for i = 2, #ARGV, 2 do
+  result[#result + 1] = redis.call('DECRBY', ARGV[1] .. ARGV[i], ARGV[i + 1])
+  redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+return result
@@ -0,0 +1,13 @@
+-- Chuyển số lượng đã trừ sang hash đang xử lý (RENAME) và trả về nội dung của nó.
+-- Hash đang xử lý chỉ bị xóa sau khi ghi MongoDB xong, nên nếu lần trước lỗi/chết giữa chừng
+-- thì lần này xử lý lại đúng batch cũ trước (cùng mã batch, ghi lại không bị cộng trùng)
+-- KEYS[1] = hash productId -> quantity, KEYS[2] = hash đang xử lý
+-- ARGV[1] = mã batch mới
+if redis.call('EXISTS', KEYS[2]) == 0 then
+  if redis.call('EXISTS', KEYS[1]) == 0 then
+    return {}
+  end
+  redis.call('RENAME', KEYS[1], KEYS[2])
+  redis.call('HSET', KEYS[2], '_batch', ARGV[1])
+end
+return redis.call('HGETALL', KEYS[2])
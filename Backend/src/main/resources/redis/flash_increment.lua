@@ -0,0 +1,14 @@
+-- Cộng lại stock flash sale (hoàn kho), chỉ với sản phẩm còn counter trên Redis
+-- KEYS[1] = hash số lượng đã trừ chưa ghi xuống MongoDB
+-- ARGV[1] = prefix key stock của sản phẩm, ARGV[2..] = cặp productId, quantity
+-- Trả về danh sách productId không còn flash sale (cần hoàn kho trực tiếp trên MongoDB)
+local skipped = {}
+for i = 2, #ARGV, 2 do
+  if redis.call('EXISTS', ARGV[1] .. ARGV[i]) == 1 then
+    redis.call('INCRBY', ARGV[1] .. ARGV[i], ARGV[i + 1])
+    redis.call('HINCRBY', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1]))
+  else
+    skipped[#skipped + 1] = ARGV[i]
+  end
+end
+return skipped
@@ -0,0 +1,21 @@
+-- Trả lại hàng đang giữ của một khách hàng
+-- KEYS[1] = hash giữ hàng của khách, KEYS[2] = sorted set thời điểm hết hạn
+-- ARGV[1] = customerId, ARGV[2] = prefix key tổng đang giữ của sản phẩm
+-- ARGV[3] = (tùy chọn) chỉ trả nếu đã hết hạn trước thời điểm này (ms), tránh xóa lượt vừa được gia hạn
+if ARGV[3] and ARGV[3] ~= '' then
+  local expiresAt = redis.call('ZSCORE', KEYS[2], ARGV[1])
+  if expiresAt and tonumber(expiresAt) > tonumber(ARGV[3]) then
+    return 0
+  end
+end
+
+local held = redis.call('HGETALL', KEYS[1])
+for i = 1, #held, 2 do
+  local key = ARGV[2] .. held[i]
+  if redis.call('DECRBY', key, held[i + 1]) <= 0 then
+    redis.call('DEL', key)
+  end
+end
+redis.call('DEL', KEYS[1])
+redis.call('ZREM', KEYS[2], ARGV[1])
+return #held / 2
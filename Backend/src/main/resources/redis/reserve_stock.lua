@@ -0,0 +1,33 @@
+-- Giữ hàng cho một lượt checkout (thay thế lượt giữ cũ của cùng khách hàng)
+-- KEYS[1] = hash giữ hàng của khách (productId -> quantity)
+-- KEYS[2] = sorted set thời điểm hết hạn (member = customerId)
+-- ARGV[1] = customerId, ARGV[2] = thời điểm hết hạn (ms), ARGV[3] = prefix key tổng đang giữ của sản phẩm
+-- ARGV[4..] = bộ ba productId, quantity, stock
+-- Trả về 0 nếu thành công, ngược lại là vị trí (từ 1) của sản phẩm không đủ hàng
+local held = redis.call('HGETALL', KEYS[1])
+local old = {}
+for i = 1, #held, 2 do
+  old[held[i]] = tonumber(held[i + 1])
+end
+
+for i = 4, #ARGV, 3 do
+  local pid = ARGV[i]
+  local reserved = tonumber(redis.call('GET', ARGV[3] .. pid) or '0') - (old[pid] or 0)
+  if tonumber(ARGV[i + 2]) - reserved < tonumber(ARGV[i + 1]) then
+    return (i - 1) / 3
+  end
+end
+
+for pid, qty in pairs(old) do
+  if redis.call('DECRBY', ARGV[3] .. pid, qty) <= 0 then
+    redis.call('DEL', ARGV[3] .. pid)
+  end
+end
+redis.call('DEL', KEYS[1])
+
+for i = 4, #ARGV, 3 do
+  redis.call('INCRBY', ARGV[3] .. ARGV[i], ARGV[i + 1])
+  redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+redis.call('ZADD', KEYS[2], ARGV[2], ARGV[1])
+return 0
@@ -0,0 +1,31 @@
+-- Space-Saving top-K trên một sorted set
+-- KEYS[1]: sorted set member -> số đếm, KEYS[2]: hash member -> sai số (overestimate) tối đa
+-- ARGV[1]: số phần tử tối đa được theo dõi, ARGV[2]: TTL (ms, 0 = không hết hạn)
+-- ARGV[3..]: các cặp member, weight (weight âm = hoàn lại)
+local capacity = tonumber(ARGV[1])
+local ttl = tonumber(ARGV[2])
+for i = 3, #ARGV, 2 do
+  local member = ARGV[i]
+  local weight = tonumber(ARGV[i + 1])
+  local tracked = redis.call('ZSCORE', KEYS[1], member)
+  if weight < 0 then
+    -- Hoàn lại (đơn rời trạng thái DELIVERED): chỉ trừ nếu member đang được theo dõi
+    if tracked then
+      redis.call('ZINCRBY', KEYS[1], weight, member)
+    end
+  elseif tracked or redis.call('ZCARD', KEYS[1]) < capacity then
+    redis.call('ZINCRBY', KEYS[1], weight, member)
+  else
+    -- Thay phần tử nhỏ nhất, kế thừa số đếm của nó làm sai số
+    local min = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+    redis.call('ZREM', KEYS[1], min[1])
+    redis.call('HDEL', KEYS[2], min[1])
+    redis.call('ZADD', KEYS[1], tonumber(min[2]) + weight, member)
+    redis.call('HSET', KEYS[2], member, min[2])
+  end
+end
+if ttl > 0 then
+  redis.call('PEXPIRE', KEYS[1], ttl)
+  redis.call('PEXPIRE', KEYS[2], ttl)
+end
+return redis.call('ZCARD', KEYS[1])
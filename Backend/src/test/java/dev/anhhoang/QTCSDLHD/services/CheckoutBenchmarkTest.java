@@ -0,0 +1,300 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import dev.anhhoang.QTCSDLHD.dto.CartItemRequest;
+import dev.anhhoang.QTCSDLHD.dto.CreateOrderRequest;
+import dev.anhhoang.QTCSDLHD.models.Money;
+import dev.anhhoang.QTCSDLHD.models.Order;
+import dev.anhhoang.QTCSDLHD.models.Product;
+import dev.anhhoang.QTCSDLHD.models.User;
+import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+import dev.anhhoang.QTCSDLHD.repositories.UserRepository;
+
+/**
+ * Đo throughput của createOrderFromCart với kho hàng trong bộ nhớ (InMemoryProductStock)
+ * thay cho MongoDB/Redis: orders/s, độ trễ p50/p99, số lượng bán vượt stock và số round trip
+ * tới database mỗi đơn, với giỏ hàng 1 / 5 / 20 sản phẩm.
+ * Một lượt chạy làm nóng (JIT, pool thread) trước lượt đo; stock đủ cho mọi checkout nên độ trễ
+ * chỉ tính các đơn đặt thành công, không lẫn các lần bị từ chối vì hết hàng.
+ * Chỉ chạy khi bật: mvn test -Dtest=CheckoutBenchmarkTest -Dbenchmark=true
+ * (tùy chọn -Dbenchmark.checkouts=..., -Dbenchmark.warmup=..., -Dbenchmark.threads=...).
+ */
+@ExtendWith(MockitoExtension.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CheckoutBenchmarkTest {
+
+    private static final int CHECKOUTS = Integer.getInteger("benchmark.checkouts", 5000);
+    private static final int WARMUP_CHECKOUTS = Integer.getInteger("benchmark.warmup", 1000);
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 32);
+    private static final int PRODUCTS = 200;
+    private static final int MAX_QUANTITY = 3;
+    // Mỗi giỏ có một sản phẩm nhiều nhất một dòng, nên stock này đủ cho mọi checkout của cả hai lượt
+    private static final int STOCK_PER_PRODUCT = MAX_QUANTITY * (WARMUP_CHECKOUTS + CHECKOUTS);
+    private static final String CUSTOMER_ID = "customer-1";
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ProductCacheService productCacheService;
+
+    @Mock
+    private VoucherService voucherService;
+
+    @Mock
+    private FlashSaleService flashSaleService;
+
+    @Mock
+    private InventoryReservationService reservationService;
+
+    @Mock
+    private OrderBatchWriter orderBatchWriter;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private PostCheckoutPipeline postCheckoutPipeline;
+
+    private final InMemoryProductStock stock = new InMemoryProductStock();
+    // Round trip ngoài thao tác stock: đọc user, đọc sản phẩm, ghi đơn, ghi outbox, giữ/trả hàng trên Redis
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final Map<String, Product> catalog = new HashMap<>();
+    private final Map<String, AtomicInteger> sold = new ConcurrentHashMap<>();
+    private CustomerServiceImpl customerService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.set_id("sku-" + i);
+            product.setName("Product " + i);
+            product.setPrice(Money.of(10_000L + i * 1_000L));
+            product.setShopid("shop-" + (i % 10));
+            product.setShopname("Shop " + (i % 10));
+            catalog.put(product.get_id(), product);
+            stock.put(product.get_id(), STOCK_PER_PRODUCT);
+        }
+        stock.stub(productRepository);
+
+        User customer = new User();
+        customer.setId(CUSTOMER_ID);
+        lenient().when(userRepository.findById(CUSTOMER_ID)).thenAnswer(invocation -> {
+            roundTrips.incrementAndGet();
+            return Optional.of(customer);
+        });
+        // Mỗi lần đọc trả về bản sao mới với stock hiện tại, như một query MongoDB
+        lenient().when(productRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            roundTrips.incrementAndGet();
+            List<Product> products = new ArrayList<>();
+            for (String id : (Iterable<String>) invocation.getArgument(0)) {
+                Product source = catalog.get(id);
+                Product copy = new Product();
+                copy.set_id(source.get_id());
+                copy.setName(source.getName());
+                copy.setPrice(source.getPrice());
+                copy.setShopid(source.getShopid());
+                copy.setShopname(source.getShopname());
+                copy.setStock(stock.get(id));
+                products.add(copy);
+            }
+            return products;
+        });
+        lenient().when(reservationService.reserve(anyString(), anyMap(), anyMap())).thenAnswer(invocation -> {
+            roundTrips.incrementAndGet();
+            return null;
+        });
+        lenient().doAnswer(invocation -> {
+            roundTrips.incrementAndGet();
+            return null;
+        }).when(reservationService).release(anyString());
+        lenient().when(orderBatchWriter.insertAll(anyList())).thenAnswer(invocation -> {
+            roundTrips.incrementAndGet();
+            List<Order> orders = invocation.getArgument(0);
+            orders.forEach(order -> order.set_id(new ObjectId().toHexString()));
+            return orders;
+        });
+        lenient().doAnswer(invocation -> {
+            roundTrips.incrementAndGet();
+            return null;
+        }).when(outboxService).publishPurchases(anyString(), anyString(), anyList());
+        lenient().when(postCheckoutPipeline.submit(anyString(), anyString(), anyList())).thenReturn(null);
+        lenient().when(flashSaleService.activeAmong(any())).thenReturn(Collections.emptySet());
+
+        InventoryService inventoryService = new InventoryService();
+        ReflectionTestUtils.setField(inventoryService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(inventoryService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(inventoryService, "productCacheService", productCacheService);
+        ReflectionTestUtils.setField(inventoryService, "flashSaleService", flashSaleService);
+
+        CartPricingService cartPricingService = new CartPricingService();
+        ReflectionTestUtils.setField(cartPricingService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(cartPricingService, "voucherService", voucherService);
+        ReflectionTestUtils.setField(cartPricingService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(cartPricingService, "flashSaleService", flashSaleService);
+
+        customerService = new CustomerServiceImpl();
+        ReflectionTestUtils.setField(customerService, "userRepository", userRepository);
+        ReflectionTestUtils.setField(customerService, "productRepository", productRepository);
+        ReflectionTestUtils.setField(customerService, "inventoryService", inventoryService);
+        ReflectionTestUtils.setField(customerService, "cartPricingService", cartPricingService);
+        ReflectionTestUtils.setField(customerService, "reservationService", reservationService);
+        ReflectionTestUtils.setField(customerService, "orderBatchWriter", orderBatchWriter);
+        ReflectionTestUtils.setField(customerService, "outboxService", outboxService);
+        ReflectionTestUtils.setField(customerService, "postCheckoutPipeline", postCheckoutPipeline);
+    }
+
+    @ParameterizedTest(name = "cart of {0} items")
+    @ValueSource(ints = { 1, 5, 20 })
+    void checkoutThroughput(int cartSize) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        // Làm nóng, seed khác lượt đo
+        runCheckouts(executor, cartSize, WARMUP_CHECKOUTS, CHECKOUTS, new AtomicInteger(), new AtomicInteger());
+
+        long roundTripsBefore = roundTrips.get() + stock.roundTrips();
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+        long begin = System.nanoTime();
+        long[] latencies = runCheckouts(executor, cartSize, CHECKOUTS, 0, placed, outOfStock);
+        long elapsed = System.nanoTime() - begin;
+        long totalRoundTrips = roundTrips.get() + stock.roundTrips() - roundTripsBefore;
+        executor.shutdown();
+
+        // Bán vượt: số lượng đã bán vượt quá stock ban đầu; stock còn lại phải khớp với số đã bán
+        long oversold = 0;
+        for (String productId : catalog.keySet()) {
+            int soldQuantity = sold.containsKey(productId) ? sold.get(productId).get() : 0;
+            oversold += Math.max(0, soldQuantity - STOCK_PER_PRODUCT);
+            assertEquals(STOCK_PER_PRODUCT - soldQuantity, stock.get(productId), "stock drift for " + productId);
+        }
+
+        System.out.printf("[checkout benchmark] cart=%d checkouts=%d warmup=%d threads=%d placed=%d outOfStock=%d%n",
+                cartSize, CHECKOUTS, WARMUP_CHECKOUTS, THREADS, placed.get(), outOfStock.get());
+        System.out.printf("[checkout benchmark] cart=%d orders/s=%.0f p50=%.3fms p99=%.3fms oversold=%d"
+                + " roundTrips/order=%.2f%n",
+                cartSize,
+                placed.get() / (elapsed / 1e9),
+                percentile(latencies, 50) / 1e6,
+                percentile(latencies, 99) / 1e6,
+                oversold,
+                placed.get() > 0 ? (double) totalRoundTrips / placed.get() : 0.0);
+
+        assertEquals(0, oversold);
+        assertEquals(0, outOfStock.get());
+    }
+
+    /**
+     * Chạy count lượt checkout đồng thời (giỏ hàng sinh từ seed seedOffset + i)
+     *
+     * @return độ trễ (ns) đã sắp xếp của các đơn đặt thành công
+     */
+    private long[] runCheckouts(ExecutorService executor, int cartSize, int count, int seedOffset,
+            AtomicInteger placed, AtomicInteger outOfStock) throws Exception {
+        long[] latencies = new long[count];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                CreateOrderRequest request = request(new Random(seedOffset + index), cartSize);
+                start.await();
+                long begin = System.nanoTime();
+                try {
+                    customerService.createOrderFromCart(CUSTOMER_ID, request);
+                    long latency = System.nanoTime() - begin;
+                    latencies[placed.getAndIncrement()] = latency;
+                    request.getItems().forEach(item -> sold
+                            .computeIfAbsent(item.getProductId(), id -> new AtomicInteger())
+                            .addAndGet(item.getQuantity()));
+                } catch (RuntimeException e) {
+                    if (!e.getMessage().startsWith("Not enough stock")) {
+                        throw e;
+                    }
+                    outOfStock.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long[] placedLatencies = Arrays.copyOf(latencies, placed.get());
+        Arrays.sort(placedLatencies);
+        return placedLatencies;
+    }
+
+    // Giỏ hàng gồm cartSize sản phẩm khác nhau, mỗi sản phẩm 1-3 cái
+    private static CreateOrderRequest request(Random random, int cartSize) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            indexes.add(i);
+        }
+        Collections.shuffle(indexes, random);
+        List<CartItemRequest> items = new ArrayList<>();
+        for (int i = 0; i < cartSize; i++) {
+            CartItemRequest item = new CartItemRequest();
+            item.setProductId("sku-" + indexes.get(i));
+            item.setQuantity(1 + random.nextInt(MAX_QUANTITY));
+            items.add(item);
+        }
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setFullName("Benchmark");
+        request.setPhoneNumber("0900000000");
+        request.setShippingAddress("1 Benchmark Street");
+        request.setPaymentMethod("Tiền mặt");
+        request.setItems(items);
+        request.setBuyNow(true);
+        return request;
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0L;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
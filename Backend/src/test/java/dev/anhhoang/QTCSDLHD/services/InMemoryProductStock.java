@@ -0,0 +1,64 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+
+/**
+ * Kho hàng trong bộ nhớ thay cho MongoDB: mỗi thao tác trên một sản phẩm là nguyên tử,
+ * giống như findAndModify / $inc trên một document.
+ */
+class InMemoryProductStock {
+
+    private final Map<String, Integer> stock = new ConcurrentHashMap<>();
+    private final AtomicLong roundTrips = new AtomicLong();
+
+    void put(String productId, int quantity) {
+        stock.put(productId, quantity);
+    }
+
+    int get(String productId) {
+        return stock.get(productId);
+    }
+
+    long roundTrips() {
+        return roundTrips.get();
+    }
+
+    Integer decrementIfAvailable(String productId, int quantity) {
+        roundTrips.incrementAndGet();
+        Integer[] newStock = new Integer[1];
+        stock.computeIfPresent(productId, (id, current) -> {
+            if (current < quantity) {
+                return current;
+            }
+            newStock[0] = current - quantity;
+            return newStock[0];
+        });
+        return newStock[0];
+    }
+
+    int increment(Map<String, Integer> quantities) {
+        roundTrips.incrementAndGet();
+        quantities.forEach((productId, quantity) -> stock.merge(productId, quantity, Integer::sum));
+        return quantities.size();
+    }
+
+    /**
+     * Nối các thao tác stock của ProductRepository (mock) vào kho trong bộ nhớ
+     */
+    @SuppressWarnings("unchecked")
+    void stub(ProductRepository productRepository) {
+        lenient().when(productRepository.decrementStockIfAvailable(anyString(), anyInt()))
+                .thenAnswer(invocation -> decrementIfAvailable(invocation.getArgument(0), invocation.getArgument(1)));
+        lenient().when(productRepository.incrementStock(anyMap()))
+                .thenAnswer(invocation -> increment((Map<String, Integer>) invocation.getArgument(0)));
+    }
+}
@@ -0,0 +1,149 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import dev.anhhoang.QTCSDLHD.models.OrderItem;
+import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+
+/**
+ * Nhiều checkout đồng thời tranh cùng một sản phẩm: không được bán vượt stock,
+ * và các dòng đã trừ của checkout thất bại phải được hoàn lại.
+ */
+@ExtendWith(MockitoExtension.class)
+class InventoryServiceStressTest {
+
+    private static final int CHECKOUTS = 500;
+    private static final int THREADS = 64;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductCacheService productCacheService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private FlashSaleService flashSaleService;
+
+    @InjectMocks
+    private InventoryService inventoryService;
+
+    private final InMemoryProductStock stock = new InMemoryProductStock();
+
+    @BeforeEach
+    void setUp() {
+        stock.stub(productRepository);
+    }
+
+    @Test
+    void concurrentCheckoutsOfOneSkuNeverOversell() throws Exception {
+        stock.put("sku-hot", 120);
+
+        AtomicInteger sold = new AtomicInteger();
+        runConcurrently(i -> {
+            inventoryService.decrementStock(List.of(item("sku-hot", 1)));
+            sold.incrementAndGet();
+        });
+
+        assertEquals(120, sold.get());
+        assertEquals(0, stock.get("sku-hot"));
+    }
+
+    @Test
+    void failedMultiLineCheckoutsAreCompensated() throws Exception {
+        // Mỗi checkout mua 1 "a-sku" và 2 "b-sku"; b-sku hết trước nên a-sku đã trừ phải được cộng lại
+        stock.put("a-sku", 300);
+        stock.put("b-sku", 101);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        runConcurrently(i -> {
+            inventoryService.decrementStock(List.of(item("a-sku", 1), item("b-sku", 2)));
+            succeeded.incrementAndGet();
+        });
+
+        assertEquals(50, succeeded.get());
+        assertEquals(1, stock.get("b-sku"));
+        assertEquals(300 - succeeded.get(), stock.get("a-sku"));
+    }
+
+    @Test
+    void mixedCartsKeepStockConsistent() throws Exception {
+        stock.put("x-sku", 90);
+        stock.put("y-sku", 40);
+
+        AtomicInteger soldX = new AtomicInteger();
+        AtomicInteger soldY = new AtomicInteger();
+        runConcurrently(i -> {
+            if (i % 3 == 0) {
+                inventoryService.decrementStock(List.of(item("y-sku", 1), item("x-sku", 2)));
+                soldX.addAndGet(2);
+                soldY.incrementAndGet();
+            } else {
+                inventoryService.decrementStock(List.of(item("x-sku", 1)));
+                soldX.incrementAndGet();
+            }
+        });
+
+        assertTrue(stock.get("x-sku") >= 0 && stock.get("y-sku") >= 0);
+        assertEquals(90, soldX.get() + stock.get("x-sku"));
+        assertEquals(40, soldY.get() + stock.get("y-sku"));
+    }
+
+    private interface Checkout {
+        void run(int i);
+    }
+
+    // Chạy CHECKOUTS checkout trên THREADS luồng, bắt đầu cùng lúc; checkout hết hàng bị bỏ qua
+    private void runConcurrently(Checkout checkout) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    checkout.run(index);
+                } catch (RuntimeException e) {
+                    if (!e.getMessage().startsWith("Not enough stock")) {
+                        throw e;
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    private static OrderItem item(String productId, int quantity) {
+        OrderItem item = new OrderItem();
+        item.setProduct_id(productId);
+        item.setProduct_name(productId);
+        item.setQuantity(quantity);
+        return item;
+    }
+}
@@ -0,0 +1,126 @@
+package dev.anhhoang.QTCSDLHD.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import dev.anhhoang.QTCSDLHD.config.RedisConfig;
+import dev.anhhoang.QTCSDLHD.dto.ProductResponse;
+import dev.anhhoang.QTCSDLHD.models.Money;
+import dev.anhhoang.QTCSDLHD.repositories.ProductRepository;
+import dev.anhhoang.QTCSDLHD.repositories.UserRepository;
+
+/**
+ * Bản ghi sản phẩm ghi bằng cacheProducts phải đọc lại được qua getProductsFromCache
+ * (cùng serializer với RedisConfig, giá trị đọc về là LinkedHashMap), không rơi xuống MongoDB.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductCacheServiceTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private ProductCacheService productCacheService;
+
+    // Redis giả: key -> value đã serialize
+    private final Map<String, byte[]> store = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisSerializer<Object> serializer = (RedisSerializer<Object>) new RedisConfig()
+                .redisTemplate(mock(RedisConnectionFactory.class)).getValueSerializer();
+        lenient().when(redisTemplate.getStringSerializer()).thenReturn(RedisSerializer.string());
+        lenient().when(redisTemplate.getValueSerializer()).thenReturn((RedisSerializer) serializer);
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        RedisConnection connection = mock(RedisConnection.class);
+        RedisStringCommands stringCommands = mock(RedisStringCommands.class);
+        lenient().when(connection.stringCommands()).thenReturn(stringCommands);
+        lenient().when(stringCommands.set(any(byte[].class), any(byte[].class), any(Expiration.class),
+                any(RedisStringCommands.SetOption.class))).thenAnswer(invocation -> {
+                    store.put(new String((byte[]) invocation.getArgument(0), StandardCharsets.UTF_8),
+                            invocation.getArgument(1));
+                    return true;
+                });
+        lenient().when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(connection);
+            return List.of();
+        });
+        lenient().when(valueOperations.multiGet(anyList())).thenAnswer(invocation -> {
+            List<Object> values = new ArrayList<>();
+            for (String key : (List<String>) invocation.getArgument(0)) {
+                byte[] bytes = store.get(key);
+                values.add(bytes != null ? serializer.deserialize(bytes) : null);
+            }
+            return values;
+        });
+        lenient().when(valueOperations.get(anyString())).thenAnswer(invocation -> {
+            byte[] bytes = store.get((String) invocation.getArgument(0));
+            return bytes != null ? serializer.deserialize(bytes) : null;
+        });
+    }
+
+    @Test
+    void cachedProductRecordWithoutQuantityIsACacheHit() {
+        ProductResponse product = new ProductResponse();
+        product.set_id("sku-1");
+        product.setName("Product 1");
+        product.setPrice(Money.of(25_000L));
+        product.setStock(7);
+        product.setShop_id("shop-1");
+        product.setShop_name("Shop 1");
+        productCacheService.cacheProducts(List.of(product));
+
+        Map<String, ProductResponse> products = productCacheService.getProductsFromCache(List.of("sku-1"));
+        ProductResponse cached = products.get("sku-1");
+        assertNotNull(cached);
+        assertEquals("Product 1", cached.getName());
+        assertEquals(Money.of(25_000L), cached.getPrice());
+        assertEquals(7, cached.getStock());
+        assertEquals("Shop 1", cached.getShop_name());
+        assertNull(cached.getQuantity());
+
+        assertNotNull(productCacheService.getProductFromCache("sku-1"));
+        verify(productRepository, never()).findAllById(any());
+        verify(productRepository, never()).findById(anyString());
+    }
+}
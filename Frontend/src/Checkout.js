@@ -16,6 +16,8 @@ function Checkout() {
     const [selectedVouchers, setSelectedVouchers] = useState({});
     const [selectedProductIds, setSelectedProductIds] = useState([]);
     const [isPlacingOrder, setIsPlacingOrder] = useState(false);
+    // Một key cho mỗi lần thanh toán: gửi lại (double click, retry mạng) không tạo đơn trùng
+    const [idempotencyKey] = useState(() => crypto.randomUUID());
     const navigate = useNavigate();
     const location = useLocation();
 
@@ -125,6 +127,41 @@ function Checkout() {
         ? cartProducts.filter(p => selectedProductIds.includes(p._id))
         : [];
 
+    // Giữ hàng trong thời gian thanh toán; rời trang thì trả lại
+    useEffect(() => {
+        if (displayedProducts.length === 0) return;
+        const token = localStorage.getItem('token');
+        if (!token) return;
+        fetch('http://localhost:8080/api/customers/orders/reservation', {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json',
+                'Authorization': `Bearer ${token}`
+            },
+            body: JSON.stringify({
+                items: displayedProducts.map(item => ({
+                    productId: item._id,
+                    quantity: parseInt(item.quantity)
+                }))
+            })
+        }).then(async response => {
+            if (!response.ok) {
+                setMessage(await response.text());
+            }
+        }).catch(() => { });
+    }, [cartProducts, selectedProductIds]);
+
+    useEffect(() => {
+        return () => {
+            const token = localStorage.getItem('token');
+            if (!token) return;
+            fetch('http://localhost:8080/api/customers/orders/reservation', {
+                method: 'DELETE',
+                headers: { 'Authorization': `Bearer ${token}` }
+            }).catch(() => { });
+        };
+    }, []);
+
     const calculateTotal = () => {
         return displayedProducts.reduce((sum, item) => {
             if (!selectedProductIds.includes(item._id)) return sum;
@@ -168,7 +205,8 @@ function Checkout() {
                 method: 'POST',
                 headers: {
                     'Content-Type': 'application/json',
-                    'Authorization': `Bearer ${token}`
+                    'Authorization': `Bearer ${token}`,
+                    'Idempotency-Key': idempotencyKey
                 },
                 body: JSON.stringify({
                     fullName,